@@ -0,0 +1,22 @@
+// AffinityLike.java
+/**
+ * Interfaz opcional para elementos de trabajo con afinidad de datos: el nodo
+ * (nombre de procesador MPI) donde sus datos son locales, p. ej. el disco o la
+ * cache de paginas que ya contiene el archivo que el elemento va a leer.
+ *
+ * DLML la usa como sugerencia:
+ *  - Al donar, el protocolo prefiere los elementos afines al nodo del ladron y
+ *    conserva los afines al nodo propio (solo con la cola en el heap).
+ *  - {@link DLMLContext#InsertAffine} reparte la carga inicial entre los procesos
+ *    del nodo afin.
+ *
+ * El metodo no sigue la convencion de getters, asi que Jackson no lo serializa:
+ * la implementacion decide si la afinidad viaja como campo propio del POJO.
+ */
+public interface AffinityLike extends DataLike {
+
+    /**
+     * @return nombre del nodo afin, o null/cadena vacia si el elemento no tiene afinidad
+     */
+    String affinity();
+}
@@ -0,0 +1,51 @@
+// Backoff.java
+import java.util.SplittableRandom;
+
+/**
+ * Espera exponencial con jitter entre subastas fallidas.
+ *
+ * Cada espera duplica la anterior desde -Dodlml.backoff.base hasta
+ * -Dodlml.backoff.max (microsegundos; 50 y 10000 por omision). Se sortea dentro de
+ * [d * (1 - jitter), d], con -Dodlml.backoff.jitter entre 0 y 1 (0.5 por omision),
+ * para que los procesos ociosos no reintenten todos a la vez. Un robo con datos
+ * vuelve a la espera base. Se desactiva con -Dodlml.backoff=false (reintento
+ * inmediato, como antes).
+ *
+ * No es thread-safe: la usa solo el hilo de protocolo.
+ */
+final class Backoff {
+
+    static final boolean ACTIVA = !"false".equalsIgnoreCase(System.getProperty("odlml.backoff", "true"));
+    private static final long BASE = Long.getLong("odlml.backoff.base", 50L) * 1000L;
+    private static final long MAX = Math.max(BASE, Long.getLong("odlml.backoff.max", 10_000L) * 1000L);
+    private static final double JITTER = Math.min(1.0, Math.max(0.0,
+            Double.parseDouble(System.getProperty("odlml.backoff.jitter", "0.5"))));
+
+    private final SplittableRandom rnd;
+    private long actual = BASE;
+
+    /**
+     * @param semilla semilla del jitter (p. ej. el rank, para no sincronizar procesos)
+     */
+    Backoff(long semilla) {
+        this.rnd = new SplittableRandom(Sketch.mix64(semilla));
+    }
+
+    /**
+     * @return espera antes del siguiente reintento, en nanosegundos (0 si esta desactivada)
+     */
+    long next() {
+        if (!ACTIVA || BASE <= 0) {
+            return 0;
+        }
+        long d = actual;
+        actual = Math.min(actual * 2, MAX);
+        long j = (long) (d * JITTER);
+        return (j > 0) ? d - rnd.nextLong(j + 1) : d;
+    }
+
+    /** Vuelve a la espera base (tras un robo con datos o al empezar una fase). */
+    void reset() {
+        actual = BASE;
+    }
+}
@@ -0,0 +1,39 @@
+// ColumnarLike.java
+/**
+ * Interfaz opcional para elementos de trabajo con un formato fijo de enteros: un
+ * registro de {@link #fields()} valores int, el mismo numero para todas las
+ * instancias de la clase (p. ej. las mascaras y el renglon de un tablero).
+ *
+ * Si la clase de datos del contexto la implementa, DLML usa {@link ColumnarQueue}:
+ * los elementos se guardan como renglones de enteros y los lotes donados viajan por
+ * columnas (todos los valores del campo 0, luego los del campo 1, ...) en un buffer
+ * directo enviado con MPI.INT, sin JSON. El receptor reconstruye cada elemento solo
+ * al extraerlo con Get. Se desactiva con -Dodlml.columnar=false.
+ *
+ * Los metodos no siguen la convencion de getters, asi que Jackson no los serializa;
+ * la clase debe seguir siendo un POJO valido para las demas operaciones
+ * (Reduce, Gather, Emit).
+ */
+public interface ColumnarLike extends DataLike {
+
+    /**
+     * @return numero de enteros del registro (constante para la clase)
+     */
+    int fields();
+
+    /**
+     * Escribe los campos del elemento en fila[off .. off + fields()).
+     *
+     * @param fila destino
+     * @param off  posicion inicial
+     */
+    void store(int[] fila, int off);
+
+    /**
+     * Restablece el elemento a partir de fila[off .. off + fields()).
+     *
+     * @param fila origen
+     * @param off  posicion inicial
+     */
+    void load(int[] fila, int off);
+}
@@ -0,0 +1,177 @@
+// ColumnarQueue.java
+import mpi.Datatype;
+import mpi.MPI;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Cola de elementos {@link ColumnarLike} guardados como renglones de enteros.
+ *
+ * Los renglones ocupan un anillo int[] de dos extremos (addFirst antes de la cabeza,
+ * lotes recibidos despues de la cola) que crece por duplicacion. Un lote es la
+ * transpuesta de sus renglones: 'fields' columnas consecutivas de 'c' enteros cada
+ * una, en orden nativo, que el protocolo envia con MPI.INT. Los elementos solo se
+ * reconstruyen al extraerlos con removeFirst (sobre instancias del pool solo con
+ * -Dodlml.pool.auto=true, ver {@link ItemPool}).
+ *
+ * Ignora la afinidad al donar; los lotes se toman siempre de la cabeza.
+ */
+final class ColumnarQueue implements WorkQueue {
+
+    private final Class<? extends ColumnarLike> cls;
+    private final int ancho;
+
+    private int[] filas;
+    private int cap;      // capacidad en renglones
+    private int cabeza;   // renglon del primer elemento
+    private int n;        // numero de renglones
+
+    private final SerialBuffer envio = new SerialBuffer(4096);
+    private final SerialBuffer recepcion = new SerialBuffer(4096);
+    private int recibidos;
+
+    /** Renglon auxiliar de encodeBatch. */
+    private final int[] fila;
+
+    /**
+     * @param cls clase de los elementos (con constructor sin argumentos)
+     */
+    ColumnarQueue(Class<? extends ColumnarLike> cls) {
+        this.cls = cls;
+        this.ancho = nuevo().fields();
+        if (ancho <= 0) {
+            throw new IllegalArgumentException(cls.getName() + ".fields() debe ser positivo");
+        }
+        this.cap = 256;
+        this.filas = new int[cap * ancho];
+        this.fila = new int[ancho];
+    }
+
+    private ColumnarLike nuevo() {
+        try {
+            return cls.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("No se puede instanciar " + cls.getName(), e);
+        }
+    }
+
+    @Override
+    public void addFirst(DataLike item) {
+        ColumnarLike c = revisar(item);
+        ensure(n + 1);
+        cabeza = (cabeza == 0) ? cap - 1 : cabeza - 1;
+        c.store(filas, cabeza * ancho);
+        n++;
+    }
+
+    @Override
+    public DataLike removeFirst() {
+        if (n == 0) {
+            throw new NoSuchElementException();
+        }
+        ColumnarLike item = ItemPool.AUTO ? DLML.POOL.pop(cls) : null;
+        if (item == null) {
+            item = nuevo();
+        }
+        item.load(filas, cabeza * ancho);
+        n--;
+        cabeza = (n == 0) ? 0 : (cabeza + 1) % cap;
+        return item;
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public ByteBuffer takeBatch(int c) {
+        envio.clear();
+        IntBuffer cols = envio.appendInts(c * ancho);
+        for (int j = 0; j < ancho; j++) {
+            int r = cabeza;
+            for (int i = 0; i < c; i++) {
+                cols.put(filas[r * ancho + j]);
+                if (++r == cap) r = 0;
+            }
+        }
+        n -= c;
+        cabeza = (n == 0) ? 0 : (cabeza + c) % cap;
+        return envio.flip();
+    }
+
+    @Override
+    public ByteBuffer reserveBatch(int bytes) {
+        recibidos = bytes;
+        return recepcion.reserve(bytes);
+    }
+
+    @Override
+    public void commitBatch(int c) {
+        if (c * ancho * Integer.BYTES > recibidos) {
+            throw new IllegalStateException("Lote columnar incompleto: " + recibidos + " bytes para " + c + " elementos");
+        }
+        IntBuffer cols = recepcion.buffer().slice(0, recibidos).order(ByteOrder.nativeOrder()).asIntBuffer();
+        ensure(n + c);
+        int cola = (cabeza + n) % cap;
+        for (int j = 0; j < ancho; j++) {
+            int r = cola;
+            for (int i = 0; i < c; i++) {
+                filas[r * ancho + j] = cols.get();
+                if (++r == cap) r = 0;
+            }
+        }
+        n += c;
+        recibidos = 0;
+    }
+
+    @Override
+    public void encodeBatch(List<? extends DataLike> items, SerialBuffer out) {
+        int c = items.size();
+        IntBuffer cols = out.appendInts(c * ancho);
+        for (int i = 0; i < c; i++) {
+            revisar(items.get(i)).store(fila, 0);
+            for (int j = 0; j < ancho; j++) {
+                cols.put(j * c + i, fila[j]);
+            }
+        }
+    }
+
+    @Override
+    public Datatype batchType() {
+        return MPI.INT;
+    }
+
+    @Override
+    public int batchUnit() {
+        return Integer.BYTES;
+    }
+
+    private ColumnarLike revisar(DataLike item) {
+        if (item == null || item.getClass() != cls) {
+            throw new IllegalArgumentException("La cola columnar solo acepta " + cls.getName()
+                    + (item == null ? "" : ", no " + item.getClass().getName()));
+        }
+        return (ColumnarLike) item;
+    }
+
+    /** Crece el anillo (linealizando su contenido) hasta tener 'necesarios' renglones. */
+    private void ensure(int necesarios) {
+        if (necesarios <= cap) {
+            return;
+        }
+        int nueva = cap;
+        while (nueva < necesarios) nueva <<= 1;
+        int[] mas = new int[nueva * ancho];
+        int primero = Math.min(n, cap - cabeza);
+        System.arraycopy(filas, cabeza * ancho, mas, 0, primero * ancho);
+        System.arraycopy(filas, 0, mas, primero * ancho, (n - primero) * ancho);
+        filas = mas;
+        cap = nueva;
+        cabeza = 0;
+    }
+}
@@ -0,0 +1,139 @@
+// Compression.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresion adaptativa (Deflate) de cargas grandes: lotes donados y objetos de
+ * Reduce/Gather.
+ *
+ * El mensaje TAM_BUFFER que precede a cada carga lleva dos enteros:
+ * {bytes enviados, bytes originales}; un 0 en el segundo indica que la carga va sin
+ * comprimir. Solo se comprimen cargas de al menos -Dodlml.compress.min bytes
+ * (8192 por omision). Tras cada compresion se compara el tiempo gastado con el
+ * tiempo de transmision ahorrado segun -Dodlml.compress.bw (MB/s del enlace, 1250
+ * por omision, ~10 GbE); si no paga, se omite la compresion en las siguientes
+ * cargas, con una espera que se duplica mientras siga sin pagar.
+ * Se desactiva con -Dodlml.compress=false.
+ *
+ * No es thread-safe: cada hilo usa su propia instancia.
+ */
+final class Compression {
+
+    static final boolean ACTIVA = !"false".equalsIgnoreCase(System.getProperty("odlml.compress", "true"));
+    static final int MINIMO = Integer.getInteger("odlml.compress.min", 8192);
+    private static final double BYTES_POR_NS = Integer.getInteger("odlml.compress.bw", 1250) / 1000.0;
+
+    /** Cargas omitidas tras una compresion que no pago (minimo y maximo). */
+    private static final int ESPERA_MIN = 16;
+    private static final int ESPERA_MAX = 1024;
+
+    /** Factor del costo de descomprimir en el receptor, relativo al de comprimir. */
+    private static final double COSTO_TOTAL = 1.5;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private final SerialBuffer salida = new SerialBuffer(8192);
+
+    private int omitir = 0;
+    private int espera = ESPERA_MIN;
+
+    /**
+     * Comprime una carga si conviene.
+     *
+     * @param datos carga en [position, limit) (no se modifica)
+     * @param tam   recibe {bytes a enviar, bytes originales o 0 si no se comprimio}
+     * @return buffer directo con la carga comprimida en [0, tam[0]), o null si debe
+     *         enviarse la original
+     */
+    ByteBuffer comprimir(ByteBuffer datos, int[] tam) {
+        int n = datos.remaining();
+        tam[0] = n;
+        tam[1] = 0;
+        if (!ACTIVA || n < MINIMO) {
+            return null;
+        }
+        if (omitir > 0) {
+            omitir--;
+            return null;
+        }
+
+        long t0 = System.nanoTime();
+        ByteBuffer out = salida.reserve(n);
+        out.limit(n);
+        deflater.reset();
+        deflater.setInput(datos.duplicate());
+        deflater.finish();
+        while (!deflater.finished() && out.hasRemaining()) {
+            deflater.deflate(out);
+        }
+        int z = deflater.finished() ? out.position() : n;
+        long dt = System.nanoTime() - t0;
+
+        if ((n - z) / BYTES_POR_NS > dt * COSTO_TOTAL) {
+            espera = ESPERA_MIN;
+        } else {
+            omitir = espera;
+            espera = Math.min(espera * 2, ESPERA_MAX);
+        }
+        if (z >= n) {
+            return null;
+        }
+        tam[0] = z;
+        tam[1] = n;
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Comprime un arreglo si conviene (cargas de Reduce/Gather).
+     *
+     * @see #comprimir(ByteBuffer, int[])
+     */
+    ByteBuffer comprimir(byte[] datos, int[] tam) {
+        return comprimir(ByteBuffer.wrap(datos), tam);
+    }
+
+    /**
+     * Descomprime una carga recibida.
+     *
+     * @param in  carga comprimida en [0, n)
+     * @param n   bytes comprimidos
+     * @param out destino; recibe los bytes originales a partir de su posicion 0
+     * @param raw bytes originales esperados
+     * @throws IOException si la carga esta corrupta o no coincide con 'raw'
+     */
+    void descomprimir(ByteBuffer in, int n, ByteBuffer out, int raw) throws IOException {
+        ByteBuffer src = in.duplicate();
+        src.clear().limit(n);
+        ByteBuffer dst = out.duplicate();
+        dst.clear().limit(raw);
+        inflater.reset();
+        inflater.setInput(src);
+        try {
+            while (!inflater.finished() && dst.hasRemaining()) {
+                if (inflater.inflate(dst) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Carga comprimida invalida: " + e.getMessage(), e);
+        }
+        if (!inflater.finished() || dst.position() != raw) {
+            throw new IOException("Carga comprimida incompleta: " + dst.position() + " de " + raw + " bytes");
+        }
+    }
+
+    /**
+     * Descomprime una carga recibida en un arreglo nuevo.
+     *
+     * @see #descomprimir(ByteBuffer, int, ByteBuffer, int)
+     */
+    byte[] descomprimir(byte[] in, int raw) throws IOException {
+        byte[] out = new byte[raw];
+        descomprimir(ByteBuffer.wrap(in), in.length, ByteBuffer.wrap(out), raw);
+        return out;
+    }
+}
@@ -0,0 +1,27 @@
+// Continuation.java
+import mpi.MPIException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Continuacion de un {@link ForkJoin#Join}: se ejecuta en el proceso dueño cuando
+ * llegaron los resultados de todos los hijos. No se serializa ni se roba, por lo
+ * que puede capturar estado local (p. ej. como lambda).
+ *
+ * @param <R> tipo del resultado
+ */
+@FunctionalInterface
+interface Continuation<R> {
+
+    /**
+     * Reanuda la tarea. Al igual que {@link Task#compute}, debe terminar con
+     * {@link ForkJoin#Complete} o con nuevos Spawn seguidos de {@link ForkJoin#Join}.
+     *
+     * @param results resultados de los hijos, en el orden en que se hizo Spawn
+     * @param fj      runtime en el que se ejecuta
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si hay un problema de serializacion
+     */
+    void resume(List<R> results, ForkJoin<R> fj) throws MPIException, IOException;
+}
@@ -0,0 +1,150 @@
+// CountMinSketch.java
+import java.nio.ByteBuffer;
+
+/**
+ * Sketch Count-Min para estimar frecuencias de claves.
+ *
+ * Mantiene {@code depth} filas de {@code width} contadores; la estimacion de una clave
+ * es el minimo de sus contadores y nunca subestima. Con width = ceil(e/eps) y
+ * depth = ceil(ln(1/delta)) el error es a lo mas eps * N con probabilidad 1 - delta.
+ * Dos sketches con las mismas dimensiones se combinan sumando contadores.
+ *
+ * Formato binario: [depth:int][width:int][total:long][contadores:depth*width longs].
+ */
+public class CountMinSketch implements Sketch<CountMinSketch> {
+
+    private final int depth;
+    private final int width;
+    private final long[] contadores;
+    private long total;
+
+    /**
+     * Crea un sketch vacio.
+     *
+     * @param depth numero de filas (funciones hash)
+     * @param width contadores por fila
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("Dimensiones invalidas: " + depth + "x" + width);
+        }
+        this.depth = depth;
+        this.width = width;
+        this.contadores = new long[depth * width];
+    }
+
+    /**
+     * Crea un sketch dimensionado a partir del error y la confianza deseados.
+     *
+     * @param eps   error relativo al total de eventos (p. ej. 0.001)
+     * @param delta probabilidad de exceder el error (p. ej. 0.01)
+     * @return sketch vacio
+     */
+    public static CountMinSketch withError(double eps, double delta) {
+        int w = (int) Math.ceil(Math.E / eps);
+        int d = (int) Math.ceil(Math.log(1.0 / delta));
+        return new CountMinSketch(Math.max(d, 1), Math.max(w, 1));
+    }
+
+    /**
+     * Reconstruye un sketch a partir de su forma binaria.
+     *
+     * @param bytes bytes producidos por {@link #toBytes()}
+     * @return sketch equivalente
+     */
+    public static CountMinSketch fromBytes(byte[] bytes) {
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        CountMinSketch c = new CountMinSketch(bb.getInt(), bb.getInt());
+        c.total = bb.getLong();
+        bb.asLongBuffer().get(c.contadores);
+        return c;
+    }
+
+    /**
+     * Suma {@code count} ocurrencias de una clave de texto.
+     *
+     * @param key   clave
+     * @param count ocurrencias (no negativas)
+     */
+    public void add(CharSequence key, long count) {
+        addHash(Sketch.hash64(key), count);
+    }
+
+    /**
+     * Suma {@code count} ocurrencias de una clave entera.
+     *
+     * @param key   clave
+     * @param count ocurrencias (no negativas)
+     */
+    public void add(long key, long count) {
+        addHash(Sketch.mix64(key), count);
+    }
+
+    private void addHash(long hash, long count) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < depth; i++) {
+            contadores[i * width + Math.floorMod(h1 + i * h2, width)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Estima las ocurrencias de una clave de texto.
+     *
+     * @param key clave
+     * @return estimacion (cota superior con alta probabilidad)
+     */
+    public long estimate(CharSequence key) {
+        return estimateHash(Sketch.hash64(key));
+    }
+
+    /**
+     * Estima las ocurrencias de una clave entera.
+     *
+     * @param key clave
+     * @return estimacion (cota superior con alta probabilidad)
+     */
+    public long estimate(long key) {
+        return estimateHash(Sketch.mix64(key));
+    }
+
+    private long estimateHash(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, contadores[i * width + Math.floorMod(h1 + i * h2, width)]);
+        }
+        return min;
+    }
+
+    /**
+     * Total de ocurrencias registradas.
+     *
+     * @return suma de todos los conteos agregados
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Dimensiones distintas: " + depth + "x" + width
+                    + " vs " + other.depth + "x" + other.width);
+        }
+        for (int i = 0; i < contadores.length; i++) {
+            contadores[i] += other.contadores[i];
+        }
+        total += other.total;
+    }
+
+    @Override
+    public byte[] toBytes() {
+        ByteBuffer bb = ByteBuffer.allocate(16 + 8 * contadores.length);
+        bb.putInt(depth).putInt(width).putLong(total);
+        bb.asLongBuffer().put(contadores);
+        return bb.array();
+    }
+}
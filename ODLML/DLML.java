@@ -1,12 +1,18 @@
+import mpi.Intracomm;
 import mpi.MPI;
 import mpi.MPIException;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.concurrent.Semaphore;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.BinaryOperator;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.function.Consumer;
 
 /**
  * DLML: utilidades de ejecucion distribuida sobre MPI integradas con una cola de datos.
@@ -15,60 +21,66 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  *  - Esta clase asume la existencia de un hilo auxiliar {@code Protocol} que coordina
  *    la disponibilidad de datos a traves de mensajes MPI y los semaforos internos.
  *  - No se modifica la interfaz publica ni la esencia del flujo original.
+ *  - El estado de la bolsa de trabajo vive en un {@link DLMLContext}; los metodos
+ *    estaticos operan sobre el contexto global (COMM_WORLD). Para bolsas
+ *    independientes y concurrentes ver {@link #NewContext}.
  *
  * @param <T> tipo de dato que implementa {@link DataLike}
  */
 class DLML<T extends DataLike> {
 
     static LoadBalancingStrategy STRATEGY = StrategyFactory.create(StrategyType.AUCTION);
+    static StrategyType STRATEGY_TYPE = StrategyType.AUCTION;
 
 
-    /** Cola de datos compartida. El acceso se coordina via {@link Protocol} y semaforos. */
-    static final LinkedList<DataLike> data = new LinkedList<>();
-
-    // Etiquetas de mensajes MPI
+    // Etiquetas de mensajes MPI y de avisos locales del trabajador a su protocolo
     static final int NO_HAY_DATOS       = 100;
     static final int PETICION_TAM_LISTA = 101;
     static final int INFORMACION_LISTA  = 102;
     static final int DAME_DATOS         = 103;
     static final int DATOS              = 104;
-    static final int LISTA_VACIA        = 105;
+    static final int LISTA_VACIA        = 105;   // aviso local (LocalChannel)
     static final int DATOS_REMOTOS      = 106;
     static final int TAM_BUFFER         = 107;
-    static final int LISTA_DE_DATOS     = 108;
+    static final int LISTA_DE_DATOS     = 108;   // aviso local (LocalChannel)
     static final int FINALIZE           = 109;
-    static final int TAM_LISTA          = 110;
+    static final int TAM_LISTA          = 110;   // aviso local (LocalChannel)
+    static final int TERMINAR           = 111;   // aviso local (LocalChannel)
+
+    /** Columnas de las lineas de {@link #Report_Csv} (sin el prefijo "CSV,"). */
+    static final String CSV_HEADER = "app,strategy,np,params,makespan_s,items,steals,failed_steals,"
+            + "items_stolen,idle_avg_s,idle_max_s";
 
     /** Rank raiz (convencion). */
     static final int ROOT = 0;
 
-    /** Flags de control intercambiadas con el hilo de protocolo. */
-    static boolean flag = false;
-    static boolean flagInfo = false;
-    static boolean flagEnd = false;
-
-    /** Identificador del proceso (rank) y total de procesos. */
+    /** Identificador del proceso (rank) y total de procesos en COMM_WORLD. */
     static int id;
     static int total;
 
-    /** Hilo de protocolo que coordina la produccion/consumo de datos. */
-    static Protocol protocol = null;
-
-    /** Semaforos para sincronizacion con el hilo de protocolo. */
-    static final Semaphore mutex = new Semaphore(0);
-    static final Semaphore mutexEnd = new Semaphore(0);
+    /** Contexto global sobre COMM_WORLD, usado por los metodos estaticos. */
+    static DLMLContext WORLD = null;
 
     /** Clase de datos para conversion tipada (opcional). */
     static Class<? extends DataLike> DATA_CLASS;
 
-    /** Mapper JSON reutilizable para reducir overhead de creacion. */
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** Elementos reciclados por la aplicacion, una pila por clase (ver {@link #Recycle}). */
+    static final ItemPool POOL = new ItemPool(Integer.getInteger("odlml.pool.size", 1024));   // por clase
+
+    /** Flujo de resultados global de {@link #Emit} (ver {@link #OpenStream}). */
+    static ResultStream<Object> STREAM = null;
+
+    /** Umbrales de granularidad para {@link #ShouldInsert(int)}. */
+    static int INLINE_LOW    = Integer.getInteger("odlml.inline.low", 16);
+    static int INLINE_HIGH   = Integer.getInteger("odlml.inline.high", 4096);
+    static int INLINE_CUTOFF = Integer.getInteger("odlml.inline.cutoff", 0);
 
 
 
 
 public static void setStrategy(LoadBalancingStrategy s) {
     if (s != null) STRATEGY = s;
+    if (WORLD != null) WORLD.setStrategy(s);
 }
 public static LoadBalancingStrategy getStrategy() { return STRATEGY; }
 
@@ -79,8 +91,8 @@ private static void configureStrategyFromEnv() {
     String pick = (prop != null && !prop.isEmpty()) ? prop : env;
     System.out.println("ID: "+id+" prop "+prop+" env "+env+" pick "+pick);
 
-    StrategyType t = StrategyType.fromString(pick);
-    STRATEGY = StrategyFactory.create(t);
+    STRATEGY_TYPE = StrategyType.fromString(pick);
+    STRATEGY = StrategyFactory.create(STRATEGY_TYPE);
 }
 
 
@@ -106,238 +118,281 @@ private static void configureStrategyFromEnv() {
     }
 
     /**
-     * Inicializa MPI y arranca el hilo de protocolo.
+     * Inicializa MPI y arranca el hilo de protocolo del contexto global.
      *
      * @param args argumentos de linea de comandos de MPI
      * @throws MPIException si ocurre un error en la inicializacion de MPI
      */
     public static void Init(String[] args) throws MPIException {
         configureStrategyFromEnv();
-        protocol = new Protocol();
         MPI.InitThread(args, MPI.THREAD_MULTIPLE);
         id = MPI.COMM_WORLD.getRank();
         total = MPI.COMM_WORLD.getSize();
-        protocol.start();
+        WORLD = new DLMLContext(MPI.COMM_WORLD, DATA_CLASS, STRATEGY);
+        WORLD.start();
     }
 
     /**
-     * Finaliza el hilo de protocolo (espera su terminacion) y cierra MPI.
+     * Finaliza el hilo de protocolo del contexto global (espera su terminacion) y cierra MPI.
+     * Los contextos creados con {@link #NewContext} deben finalizarse antes.
      *
      * @throws MPIException si ocurre un error al finalizar MPI
      */
     public static void Finalize() throws MPIException {
-        try {
-            if (protocol != null) {
-                protocol.join();
-            }
-        } catch (InterruptedException ignored) {
-            // Se preserva comportamiento original (sin reinterrumpir ni registrar)
+        if (WORLD != null) {
+            WORLD.Finalize();
         }
         MPI.Finalize();
     }
 
     /**
-     * Obtiene un elemento de la cola de datos de manera tipada.
-     * El metodo puede devolver null para indicar que no hay mas datos disponibles
-     * y que se ha coordinado el cierre con el hilo de protocolo.
+     * Crea y arranca un contexto DLML independiente sobre un comunicador (p. ej. uno
+     * obtenido con split). Tiene su propia cola, hilo de protocolo y estrategia (una
+     * instancia nueva del tipo configurado), y sus mensajes no interfieren con los de
+     * otros contextos. Es una operacion colectiva sobre 'comm'.
      *
-     * @param cls clase del tipo concreto que extiende {@link DataLike}
-     * @param <T> tipo concreto solicitado
-     * @return elemento de tipo T, o null si no hay mas datos
+     * @param comm comunicador del contexto
+     * @param cls  clase de los elementos de trabajo del contexto
+     * @return contexto listo para Insert/Get; finalizar con {@link DLMLContext#Finalize()}
      * @throws MPIException si ocurre un error de comunicacion con MPI
      */
-    public static <T extends DataLike> T Get(Class<T> cls) throws MPIException {
-        if (cls == null) {
-            throw new IllegalArgumentException("La clase de destino no debe ser null");
-        }
-
-        int[] m = new int[1];
-
-        if (flagEnd) {
-            flagEnd = false;
-            protocol = new Protocol();
-            protocol.start();
-        }
+    public static DLMLContext NewContext(Intracomm comm, Class<? extends DataLike> cls) throws MPIException {
+        DLMLContext ctx = new DLMLContext(comm, cls, StrategyFactory.create(STRATEGY_TYPE));
+        ctx.start();
+        return ctx;
+    }
 
-        if (flagInfo) {
-            MPI.COMM_WORLD.send(m, 1, MPI.INT, id, TAM_LISTA);
-            try { mutex.acquire(); } catch (InterruptedException ignored) {}
-        }
+    /**
+     * Crea un runtime de fork-join distribuido sobre 'comm', con su propio contexto
+     * DLML. Operacion colectiva sobre 'comm'.
+     *
+     * @param comm comunicador del runtime
+     * @param cls  clase de los resultados de las tareas
+     * @param <R>  tipo de los resultados
+     * @return runtime listo para {@link ForkJoin#Invoke}; finalizar con {@link ForkJoin#Finalize()}
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public static <R> ForkJoin<R> NewForkJoin(Intracomm comm, Class<R> cls) throws MPIException {
+        return new ForkJoin<>(comm, cls);
+    }
 
-        if (!flag) {
-            if (!data.isEmpty()) {
-                return cls.cast(data.removeFirst());
-            } else {
-                MPI.COMM_WORLD.send(m, 1, MPI.INT, id, LISTA_VACIA);
-                try { mutex.acquire(); } catch (InterruptedException ignored) {}
-
-                if (!data.isEmpty()) {
-                    return cls.cast(data.removeFirst());
-                } else {
-                    flagEnd = true;
-                    try { mutexEnd.acquire(); } catch (InterruptedException ignored) {}
-                    return null;
-                }
-            }
-        } else {
-            if (!data.isEmpty()) {
-                MPI.COMM_WORLD.send(m, 1, MPI.INT, id, LISTA_DE_DATOS);
-                try { mutex.acquire(); } catch (InterruptedException ignored) {}
-                return cls.cast(data.removeFirst());
-            } else {
-                MPI.COMM_WORLD.send(m, 1, MPI.INT, id, LISTA_VACIA);
-                try { mutex.acquire(); } catch (InterruptedException ignored) {}
-
-                if (!data.isEmpty()) {
-                    return cls.cast(data.removeFirst());
-                } else {
-                    flagEnd = true;
-                    try { mutexEnd.acquire(); } catch (InterruptedException ignored) {}
-                    return null;
-                }
-            }
-        }
+    /**
+     * Obtiene un elemento de la cola de datos del contexto global.
+     *
+     * @see DLMLContext#Get(Class)
+     */
+    public static <T extends DataLike> T Get(Class<T> cls) throws MPIException {
+        return WORLD.Get(cls);
     }
 
     /**
-     * Inserta un elemento al inicio de la cola de datos.
+     * Inserta un elemento al inicio de la cola de datos del contexto global.
      *
-     * @param a elemento a insertar
-     * @param <T> tipo que extiende {@link DataLike}
+     * @see DLMLContext#Insert(DataLike)
      */
     public static <T extends DataLike> void Insert(T a) {
-        data.addFirst(a);
+        WORLD.Insert(a);
     }
 
     /**
-     * Reduccion por suma de enteros. Acumula las contribuciones de todos los procesos.
-     * Mantiene el esquema de uso de gather del codigo original.
+     * Reparto inicial con afinidad sobre el contexto global.
      *
-     * @param value entero local
-     * @return suma total en el proceso raiz
-     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @see DLMLContext#InsertAffine(DataLike)
      */
-    public static int Reduce_Add(int value) throws MPIException {
-        int acc = 0;
-        int[] buffer = new int[DLML.total];
+    public static <T extends DataLike> boolean InsertAffine(T a) {
+        return WORLD.InsertAffine(a);
+    }
 
-        buffer[0] = value;
-        MPI.COMM_WORLD.gather(buffer, 1, MPI.INT, ROOT);
-        for (int i = 0; i < total; i++) {
-            acc += buffer[i];
-        }
-        return acc;
+    /**
+     * Reparto inicial con scatterv sobre el contexto global.
+     *
+     * @see DLMLContext#Distribute(List, int, Expander)
+     */
+    public static <T extends DataLike> void Distribute(List<T> seeds, int perProcess, Expander<T> expander)
+        throws MPIException, IOException {
+        WORLD.Distribute(seeds, perProcess, expander);
     }
 
     /**
-     * Reduccion por suma de dobles. Acumula las contribuciones de todos los procesos.
+     * Devuelve un elemento al pool para reutilizarlo (opcional). Tras llamarlo, la
+     * aplicacion no debe volver a usar 'item'. El pool solo contiene los elementos
+     * reciclados por la aplicacion, en una pila por clase, y solo {@link #Obtain}
+     * los reutiliza; el protocolo los usa para decodificar datos recibidos (y
+     * recicla los que dona) unicamente con -Dodlml.pool.auto=true (ver {@link ItemPool}).
      *
-     * @param value doble local
-     * @return suma total en el proceso raiz
-     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @param item elemento ya procesado
+     * @param <T> tipo que extiende {@link DataLike}
      */
-    public static double Reduce_Add(double value) throws MPIException {
-        double acc = 0.0;
-        double[] buffer = new double[DLML.total];
+    public static <T extends DataLike> void Recycle(T item) {
+        POOL.push(item);
+    }
 
-        buffer[0] = value;
-        MPI.COMM_WORLD.gather(buffer, 1, MPI.DOUBLE, ROOT);
-        for (int i = 0; i < total; i++) {
-            acc += buffer[i];
+    /**
+     * Obtiene un elemento reciclado del pool o, si no hay, una instancia nueva creada
+     * con el constructor sin argumentos. El contenido de un elemento reciclado es el
+     * que tenia al reciclarse: el llamador debe asignar todos sus campos.
+     *
+     * @param cls clase del elemento
+     * @param <T> tipo que extiende {@link DataLike}
+     * @return elemento listo para llenarse
+     */
+    public static <T extends DataLike> T Obtain(Class<T> cls) {
+        T item = POOL.pop(cls);
+        if (item != null) {
+            return item;
+        }
+        try {
+            return cls.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se puede instanciar " + cls.getName()
+                    + " (requiere constructor sin argumentos)", e);
         }
-        return acc;
     }
 
     /**
-     * Reduccion por suma de flotantes. Acumula las contribuciones de todos los procesos.
+     * Control de granularidad sobre la cola del contexto global.
      *
-     * @param value flotante local
-     * @return suma total en el proceso raiz
-     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @see DLMLContext#ShouldInsert(int)
      */
-    public static float Reduce_Add(float value) throws MPIException {
-        float acc = 0.0f;
-        float[] buffer = new float[DLML.total];
+    public static boolean ShouldInsert(int restante) {
+        return WORLD.ShouldInsert(restante);
+    }
 
-        buffer[0] = value;
-        MPI.COMM_WORLD.gather(buffer, 1, MPI.FLOAT, ROOT);
-        for (int i = 0; i < total; i++) {
-            acc += buffer[i];
-        }
-        return acc;
+    /** @see DLMLContext#Bcast(int[]) */
+    public static IntBuffer Bcast(int[] data) throws MPIException, IOException {
+        return WORLD.Bcast(data);
     }
 
+    /** @see DLMLContext#Bcast(long[]) */
+    public static LongBuffer Bcast(long[] data) throws MPIException, IOException {
+        return WORLD.Bcast(data);
+    }
 
+    /** @see DLMLContext#Bcast(double[]) */
+    public static DoubleBuffer Bcast(double[] data) throws MPIException, IOException {
+        return WORLD.Bcast(data);
+    }
 
-    /**
-     * Reduce (en root) un objeto local con el de los demás procesos usando un combinador.
-     * Cada proceso envía su objeto serializado; el root acumula aplicando 'op'.
-     *
-     * @param local  objeto local
-     * @param cls    clase del objeto (para deserializar en root)
-     * @param op     combinador asociativo (a,b) -> resultado
-     * @return en root, el resultado acumulado; en procesos no-root, devuelve 'local'
-    */
+    /** @see DLMLContext#Bcast(byte[]) */
+    public static ByteBuffer Bcast(byte[] data) throws MPIException, IOException {
+        return WORLD.Bcast(data);
+    }
+
+    /** @see DLMLContext#Reduce_Add(int) */
+    public static int Reduce_Add(int value) throws MPIException {
+        return WORLD.Reduce_Add(value);
+    }
+
+    /** @see DLMLContext#Reduce_Add(long) */
+    public static long Reduce_Add(long value) throws MPIException {
+        return WORLD.Reduce_Add(value);
+    }
+
+    /** @see DLMLContext#Reduce_Add(double) */
+    public static double Reduce_Add(double value) throws MPIException {
+        return WORLD.Reduce_Add(value);
+    }
+
+    /** @see DLMLContext#Reduce_Add(float) */
+    public static float Reduce_Add(float value) throws MPIException {
+        return WORLD.Reduce_Add(value);
+    }
+
+    /** @see DLMLContext#Reduce(Object, Class, BinaryOperator) */
     public static <T> T Reduce(T local, Class<T> cls, BinaryOperator<T> op)
         throws MPIException, IOException {
+        return WORLD.Reduce(local, cls, op);
+    }
 
-        byte[] dd;
-        int[] tam = new int[1];
-
-        if (DLML.id == ROOT) {
-            T acc = local;
-            for (int i = 1; i < total; i++) {
-                MPI.COMM_WORLD.recv(tam, 1, MPI.INT, i, TAM_BUFFER);
-                dd = new byte[tam[0]];
-                MPI.COMM_WORLD.recv(dd, tam[0], MPI.BYTE, i, DATOS_REMOTOS);
-                T other = MAPPER.readValue(dd, cls);
-                acc = op.apply(acc, other);
-            }
-            return acc;
-        } else {
-            dd = MAPPER.writeValueAsBytes(local);
-            tam[0] = dd.length;
-            MPI.COMM_WORLD.send(tam, 1, MPI.INT, ROOT, TAM_BUFFER);
-            MPI.COMM_WORLD.send(dd, dd.length, MPI.BYTE, ROOT, DATOS_REMOTOS);
-            return local; // en no-root retornamos lo local (o null si prefieres)
-        }
+    /** @see DLMLContext#Reduce_Merge(HyperLogLog) */
+    public static HyperLogLog Reduce_Merge(HyperLogLog local) throws MPIException, IOException {
+        return WORLD.Reduce_Merge(local);
+    }
+
+    /** @see DLMLContext#Reduce_Merge(CountMinSketch) */
+    public static CountMinSketch Reduce_Merge(CountMinSketch local) throws MPIException, IOException {
+        return WORLD.Reduce_Merge(local);
+    }
+
+    /** @see DLMLContext#ReduceByKey(Map, Class, Class, BinaryOperator) */
+    public static <K, V> HashMap<K, V> ReduceByKey(Map<K, V> local, Class<K> kcls, Class<V> vcls,
+                                                  BinaryOperator<V> op)
+        throws MPIException, IOException {
+        return WORLD.ReduceByKey(local, kcls, vcls, op);
+    }
+
+    /** @see DLMLContext#Gather_Sizes(Map) */
+    public static int[] Gather_Sizes(Map<?, ?> part) throws MPIException {
+        return WORLD.Gather_Sizes(part);
     }
 
+    /** @see DLMLContext#Gather(Object) */
+    public static <T> ArrayList<T> Gather(Object o) throws MPIException, IOException {
+        return WORLD.Gather(o);
+    }
 
+    /**
+     * Crea un flujo de resultados sobre 'comm' hacia el proceso 'collector'.
+     * Operacion colectiva sobre 'comm'.
+     *
+     * @param comm      comunicador
+     * @param cls       clase de los resultados
+     * @param collector rank del colector
+     * @param combiner  combinador aplicado en el colector a cada resultado
+     * @param <R> tipo de los resultados
+     * @return flujo listo para Emit; cerrar con {@link ResultStream#Close()}
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public static <R> ResultStream<R> NewStream(Intracomm comm, Class<R> cls, int collector,
+                                                Consumer<R> combiner) throws MPIException {
+        return new ResultStream<>(comm, cls, collector, combiner);
+    }
 
     /**
-     * Recolecta un objeto de cada proceso en el raiz y lo devuelve como lista.
-     * En el proceso NO raiz, el objeto se serializa a JSON y se envia al raiz.
-     * En el proceso raiz, se recibe cada objeto, se deserializa y se agrega a la lista.
+     * Abre el flujo de resultados global (COMM_WORLD, colector en ROOT) que usa
+     * {@link #Emit}. Operacion colectiva.
      *
-     * @param o objeto local a enviar o agregar (en el raiz)
-     * @param <T> tipo inferido para el resultado en el raiz
-     * @return en el proceso raiz, una lista con un objeto por proceso; en otros procesos, una lista vacia
+     * @param cls      clase de los resultados
+     * @param combiner combinador aplicado en el raiz a cada resultado recibido
+     * @param <R> tipo de los resultados
      * @throws MPIException si ocurre un error de comunicacion con MPI
-     * @throws IOException si hay un problema de serializacion/deserializacion
      */
     @SuppressWarnings("unchecked")
-    public static <T> ArrayList<T> Gather(Object o) throws MPIException, IOException {
-        ArrayList<T> result = new ArrayList<>();
-        byte[] dd = null;
-        int[] tam = new int[1];
-
-        if (DLML.id == ROOT) {
-            result.add((T) o);
-            for (int i = 1; i < total; i++) {
-                MPI.COMM_WORLD.recv(tam, 1, MPI.INT, i, TAM_BUFFER);
-                dd = new byte[tam[0]];
-                MPI.COMM_WORLD.recv(dd, tam[0], MPI.BYTE, i, DATOS_REMOTOS);
-                Object aux = MAPPER.readValue(dd, o.getClass());
-                result.add((T) aux);
-            }
-        } else {
-            dd = MAPPER.writeValueAsBytes(o);
-            tam[0] = dd.length;
-            MPI.COMM_WORLD.send(tam, 1, MPI.INT, ROOT, TAM_BUFFER);
-            MPI.COMM_WORLD.send(dd, dd.length, MPI.BYTE, ROOT, DATOS_REMOTOS);
+    public static <R> void OpenStream(Class<R> cls, Consumer<R> combiner) throws MPIException {
+        STREAM = (ResultStream<Object>) (ResultStream<?>) NewStream(MPI.COMM_WORLD, cls, ROOT, combiner);
+    }
+
+    /**
+     * Envia un resultado al raiz por el flujo global, en lotes y en segundo plano.
+     *
+     * @param result resultado (del tipo indicado en {@link #OpenStream})
+     */
+    public static void Emit(Object result) {
+        STREAM.Emit(result);
+    }
+
+    /**
+     * Envia el ultimo lote del flujo global y espera a que el raiz combine todos los
+     * resultados. Operacion colectiva.
+     *
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si fallo el envio o la combinacion de algun lote
+     */
+    public static void CloseStream() throws MPIException, IOException {
+        if (STREAM != null) {
+            STREAM.Close();
+            STREAM = null;
         }
-        return result;
+    }
+
+    /** @see DLMLContext#Stats() */
+    public static DLMLStats Stats() {
+        return WORLD.Stats();
+    }
+
+    /** @see DLMLContext#Report_Csv(String, String, double) */
+    public static void Report_Csv(String app, String params, double segundos) throws MPIException, IOException {
+        WORLD.Report_Csv(app, params, segundos);
     }
 
     /**
@@ -351,4 +406,3 @@ private static void configureStrategyFromEnv() {
         }
     }
 }
-
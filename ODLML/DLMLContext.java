@@ -0,0 +1,857 @@
+import mpi.Datatype;
+import mpi.Intracomm;
+import mpi.MPI;
+import mpi.MPIException;
+import mpi.Win;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Contexto DLML: una bolsa de trabajo independiente sobre un comunicador MPI.
+ *
+ * Cada contexto tiene su propia cola, hilo de protocolo, estrategia de balanceo,
+ * banderas y semaforos. El protocolo usa un duplicado privado del comunicador, asi
+ * que sus mensajes no se mezclan con los de otros contextos ni con las reducciones
+ * del propio contexto (que usan el comunicador original). Varios contextos pueden
+ * ejecutarse a la vez en un proceso, cada uno con su propio hilo de trabajo
+ * (p. ej. una etapa productora y otra consumidora).
+ *
+ * {@link DLML} expone con metodos estaticos el contexto global sobre COMM_WORLD;
+ * otros contextos se crean con {@link DLML#NewContext}.
+ */
+class DLMLContext {
+
+    /** Comunicador del contexto (reducciones y recolecciones). */
+    final Intracomm comm;
+
+    /** Duplicado privado del comunicador para el hilo de protocolo. */
+    final Intracomm pcomm;
+
+    /** Identificador del proceso (rank) y total de procesos en 'comm'. */
+    final int id;
+    final int total;
+
+    /** Cola de datos del contexto. El acceso se coordina via {@link Protocol} y semaforos. */
+    final WorkQueue data;
+
+    /** Clase de datos del contexto (para decodificar los elementos recibidos). */
+    final Class<? extends DataLike> dataClass;
+
+    /**
+     * Ventana RMA sobre 'pcomm' donde cada proceso publica el tamaño de su cola
+     * (un int en {@link #tamPublicado}), o null si no esta activa. Con ella las
+     * subastas leen los tamaños con MPI_Get en lugar de preguntar a cada victima.
+     * Se activa con -Dodlml.rma=true.
+     */
+    final Win ventana;
+    final IntBuffer tamPublicado;
+
+    /** Nombre del nodo (procesador MPI) de cada proceso, para la afinidad de datos. */
+    final String[] nodos;
+
+    /** Procesos de cada nodo y contadores del reparto de {@link #InsertAffine}. */
+    private final HashMap<String, int[]> procesosPorNodo = new HashMap<>();
+    private final HashMap<String, Integer> repartoPorNodo = new HashMap<>();
+    private int repartoGlobal = 0;
+
+    /** Estrategia de seleccion de donador. */
+    volatile LoadBalancingStrategy strategy;
+
+    /**
+     * Canal con el hilo de protocolo: avisos del trabajador, peticiones pendientes
+     * y permisos para continuar (ver {@link LocalChannel}).
+     */
+    final LocalChannel canal = new LocalChannel();
+
+    /**
+     * Fase (epoca) en curso. La incrementa el hilo de protocolo al cerrar una fase,
+     * antes de liberar al trabajador, y viaja en cada mensaje de control.
+     */
+    volatile int epoch = 0;
+
+    /** Contadores de balanceo (ver {@link DLMLStats}). */
+    final DLMLStats stats = new DLMLStats();
+
+    /** Hilo de protocolo persistente que coordina la produccion/consumo de datos. */
+    Protocol protocol = null;
+
+    /** Agrupacion por nodo para {@link #Bcast}; se crea en la primera difusion. */
+    private NodeShared compartido = null;
+
+    /** Compresion de las cargas de Reduce/Gather (solo la usa el hilo de trabajo). */
+    private final Compression compresion = new Compression();
+
+    /** Mapper JSON compartido. */
+    private static final ObjectMapper MAPPER = ItemCodec.MAPPER;
+
+    /**
+     * Crea el contexto sin arrancar su hilo de protocolo (ver {@link #start()}).
+     * Operacion colectiva sobre 'comm' (duplica el comunicador).
+     *
+     * @param comm      comunicador del contexto
+     * @param dataClass clase de los elementos de trabajo
+     * @param strategy  estrategia de balanceo
+     * @throws MPIException si falla la duplicacion del comunicador
+     */
+    DLMLContext(Intracomm comm, Class<? extends DataLike> dataClass, LoadBalancingStrategy strategy)
+        throws MPIException {
+        this.comm = comm;
+        this.pcomm = comm.dup();
+        this.id = comm.getRank();
+        this.total = comm.getSize();
+        this.dataClass = dataClass;
+        this.strategy = strategy;
+        this.data = WorkQueue.create(dataClass);
+        this.nodos = nombresDeNodo();
+        for (int i = 0; i < total; i++) {
+            int[] previos = procesosPorNodo.getOrDefault(nodos[i], new int[0]);
+            int[] ps = Arrays.copyOf(previos, previos.length + 1);
+            ps[previos.length] = i;
+            procesosPorNodo.put(nodos[i], ps);
+        }
+        if (Boolean.getBoolean("odlml.rma")) {
+            this.tamPublicado = MPI.newIntBuffer(1);
+            this.ventana = new Win(tamPublicado, 1, Integer.BYTES, MPI.INFO_NULL, pcomm);
+        } else {
+            this.tamPublicado = null;
+            this.ventana = null;
+        }
+    }
+
+    /** Intercambia (allgather sobre 'pcomm') el nombre de procesador de cada proceso. */
+    private String[] nombresDeNodo() throws MPIException {
+        final int max = 256;
+        byte[] propio = Arrays.copyOf(MPI.getProcessorName().getBytes(StandardCharsets.UTF_8), max);
+        byte[] todos = new byte[max * total];
+        pcomm.allGather(propio, max, MPI.BYTE, todos, max, MPI.BYTE);
+        String[] r = new String[total];
+        for (int i = 0; i < total; i++) {
+            int len = 0;
+            while (len < max && todos[i * max + len] != 0) len++;
+            r[i] = new String(todos, i * max, len, StandardCharsets.UTF_8);
+        }
+        return r;
+    }
+
+    /**
+     * Actualiza el tamaño de cola publicado en la ventana RMA (si esta activa).
+     * Lo llaman el trabajador tras Insert/Get y el protocolo tras donar o recibir.
+     */
+    void publicarTam() {
+        if (tamPublicado != null) {
+            tamPublicado.put(0, data.size());
+        }
+    }
+
+    /** Extrae el primer elemento de la cola y publica el nuevo tamaño. */
+    private DataLike sacar() {
+        DataLike item = data.removeFirst();
+        publicarTam();
+        stats.processed();
+        return item;
+    }
+
+    /** Espera al protocolo sin trabajo local; el tiempo se cuenta como ocio. */
+    private void esperarOcioso(boolean fin) {
+        long t0 = System.nanoTime();
+        if (fin) {
+            canal.esperarFin();
+        } else {
+            canal.esperar();
+        }
+        stats.idle(System.nanoTime() - t0);
+    }
+
+    /** Arranca el hilo de protocolo. */
+    void start() {
+        protocol = new Protocol(this);
+        canal.setProtocolo(protocol);
+        protocol.start();
+    }
+
+    /**
+     * Cambia la estrategia de balanceo del contexto.
+     *
+     * @param s nueva estrategia (se ignora si es null)
+     */
+    public void setStrategy(LoadBalancingStrategy s) {
+        if (s != null) strategy = s;
+    }
+
+    /**
+     * @return estrategia de balanceo del contexto
+     */
+    public LoadBalancingStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return rank de este proceso en el comunicador del contexto
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return numero de procesos del comunicador del contexto
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Detiene el hilo de protocolo (aviso TERMINAR), espera su terminacion y libera
+     * el comunicador privado. Debe llamarse entre fases, tras un Get que devolvio null.
+     * Es colectiva sobre 'comm'. No finaliza MPI.
+     *
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public void Finalize() throws MPIException {
+        if (protocol != null) {
+            canal.avisar(DLML.TERMINAR);
+        }
+        try {
+            if (protocol != null) {
+                protocol.join();
+            }
+        } catch (InterruptedException ignored) {
+            // Se preserva comportamiento original (sin reinterrumpir ni registrar)
+        }
+        // Ningun proceso libera el comunicador mientras otro pueda seguir enviando
+        pcomm.barrier();
+        if (ventana != null) {
+            ventana.free();
+        }
+        if (compartido != null) {
+            compartido.free();
+        }
+        pcomm.free();
+    }
+
+    /**
+     * Obtiene un elemento de la cola de datos de manera tipada.
+     * El metodo puede devolver null para indicar que no hay mas datos disponibles
+     * y que se ha coordinado el cierre de la fase con el hilo de protocolo. La
+     * siguiente llamada empieza una fase nueva con el mismo hilo de protocolo.
+     *
+     * @param cls clase del tipo concreto que extiende {@link DataLike}
+     * @param <T> tipo concreto solicitado
+     * @return elemento de tipo T, o null si no hay mas datos
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public <T extends DataLike> T Get(Class<T> cls) throws MPIException {
+        if (cls == null) {
+            throw new IllegalArgumentException("La clase de destino no debe ser null");
+        }
+
+        if (canal.hay(LocalChannel.INFO)) {
+            canal.avisar(DLML.TAM_LISTA);
+            canal.esperar();
+        }
+
+        if (!canal.hay(LocalChannel.PETICIONES)) {
+            if (!data.isEmpty()) {
+                return cls.cast(sacar());
+            } else {
+                canal.avisar(DLML.LISTA_VACIA);
+                esperarOcioso(false);
+
+                if (!data.isEmpty()) {
+                    return cls.cast(sacar());
+                } else {
+                    esperarOcioso(true);
+                    return null;
+                }
+            }
+        } else {
+            if (!data.isEmpty()) {
+                canal.avisar(DLML.LISTA_DE_DATOS);
+                canal.esperar();
+                return cls.cast(sacar());
+            } else {
+                canal.avisar(DLML.LISTA_VACIA);
+                esperarOcioso(false);
+
+                if (!data.isEmpty()) {
+                    return cls.cast(sacar());
+                } else {
+                    esperarOcioso(true);
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserta un elemento al inicio de la cola de datos.
+     *
+     * @param a elemento a insertar
+     * @param <T> tipo que extiende {@link DataLike}
+     */
+    public <T extends DataLike> void Insert(T a) {
+        data.addFirst(a);
+        publicarTam();
+    }
+
+    /**
+     * Reparto inicial con afinidad. Todos los procesos deben llamarlo con la misma
+     * secuencia de elementos; cada elemento se inserta solo en el proceso que le toca:
+     * los {@link AffinityLike} cuyo nodo existe se reparten en ronda entre los procesos
+     * de ese nodo, y los demas en ronda entre todos los procesos.
+     *
+     * @param a elemento candidato
+     * @param <T> tipo que extiende {@link DataLike}
+     * @return true si el elemento se inserto en este proceso
+     */
+    public <T extends DataLike> boolean InsertAffine(T a) {
+        String nodo = (a instanceof AffinityLike) ? ((AffinityLike) a).affinity() : null;
+        int[] locales = (nodo != null) ? procesosPorNodo.get(nodo) : null;
+        int dueno;
+        if (locales == null) {
+            dueno = repartoGlobal++ % total;
+        } else {
+            int k = repartoPorNodo.merge(nodo, 1, Integer::sum) - 1;
+            dueno = locales[k % locales.length];
+        }
+        if (dueno != id) {
+            return false;
+        }
+        Insert(a);
+        return true;
+    }
+
+    /**
+     * Reparto inicial con un solo scatterv, sin subastas de arranque. Operacion
+     * colectiva: el raiz expande (en anchura) la frontera a partir de 'seeds' hasta
+     * tener al menos perProcess * total elementos o no poder expandir mas, y la
+     * reparte en ronda; cada proceso recibe sus elementos como un lote codificado
+     * directamente en su cola.
+     *
+     * @param seeds      elementos iniciales (solo se usan en el raiz)
+     * @param perProcess elementos deseados por proceso (k)
+     * @param expander   expansion de un elemento en sus hijos; null para no expandir
+     * @param <T> tipo que extiende {@link DataLike}
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si hay un problema de serializacion/deserializacion
+     */
+    public <T extends DataLike> void Distribute(List<T> seeds, int perProcess, Expander<T> expander)
+        throws MPIException, IOException {
+
+        int[] conteos = new int[2 * total];   // {elementos, bytes} por proceso
+        int[] cuentas = new int[total];       // unidades de data.batchType() por proceso
+        int[] despl = new int[total];
+        SerialBuffer envio = null;
+
+        if (id == DLML.ROOT) {
+            ArrayDeque<T> frontera = new ArrayDeque<>(seeds != null ? seeds : new ArrayList<>());
+            expandir(frontera, Math.max(perProcess, 1) * total, expander);
+
+            ArrayList<ArrayList<T>> partes = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) {
+                partes.add(new ArrayList<>());
+            }
+            int k = 0;
+            for (T item : frontera) {
+                partes.get(k++ % total).add(item);
+            }
+
+            // Cada parte en el formato de lote de la cola; desplazamientos y tamaños
+            // del scatterv en unidades de su tipo MPI
+            int u = data.batchUnit();
+            envio = new SerialBuffer(4096);
+            for (int i = 0; i < total; i++) {
+                int inicio = envio.size();
+                data.encodeBatch(partes.get(i), envio);
+                conteos[2 * i] = partes.get(i).size();
+                conteos[2 * i + 1] = envio.size() - inicio;
+                despl[i] = inicio / u;
+                cuentas[i] = conteos[2 * i + 1] / u;
+            }
+        }
+
+        int[] propio = new int[2];
+        comm.scatter(conteos, 2, MPI.INT, propio, 2, MPI.INT, DLML.ROOT);
+
+        ByteBuffer recepcion = data.reserveBatch(propio[1]);
+        comm.scatterv(envio != null ? envio.flip() : recepcion, cuentas, despl, data.batchType(),
+                      recepcion, propio[1] / data.batchUnit(), data.batchType(), DLML.ROOT);
+        data.commitBatch(propio[0]);
+        publicarTam();
+    }
+
+    /**
+     * Expande la frontera en anchura hasta 'objetivo' elementos; se detiene antes si
+     * una pasada completa no expandio ningun elemento.
+     */
+    private static <T extends DataLike> void expandir(ArrayDeque<T> frontera, int objetivo, Expander<T> expander) {
+        if (expander == null) {
+            return;
+        }
+        boolean progreso = true;
+        while (frontera.size() < objetivo && progreso) {
+            progreso = false;
+            int n = frontera.size();
+            for (int i = 0; i < n && frontera.size() < objetivo; i++) {
+                T item = frontera.pollFirst();
+                List<T> hijos = expander.expand(item);
+                if (hijos == null || hijos.isEmpty()) {
+                    frontera.addLast(item);
+                } else {
+                    frontera.addAll(hijos);
+                    progreso = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Control de granularidad (creacion perezosa de tareas). Indica si conviene
+     * materializar un hijo e insertarlo en la cola, o si el llamador debe procesarlo
+     * en linea (recursion local) sin crear el elemento:
+     *  - Subarboles con 'restante' menor o igual a DLML.INLINE_CUTOFF se procesan en linea.
+     *  - Por debajo de DLML.INLINE_LOW elementos siempre se inserta, para tener reserva robable.
+     *  - A partir de DLML.INLINE_HIGH elementos nunca se inserta.
+     *  - Entre ambos umbrales solo se inserta si hay peticiones de datos o de tamaño
+     *    de lista pendientes en el hilo de protocolo.
+     *
+     * Umbrales configurables con -Dodlml.inline.low, -Dodlml.inline.high y
+     * -Dodlml.inline.cutoff.
+     *
+     * @param restante estimacion del trabajo restante del hijo (p. ej. profundidad por recorrer)
+     * @return true si el hijo debe insertarse con {@link #Insert}; false si debe procesarse en linea
+     */
+    public boolean ShouldInsert(int restante) {
+        if (restante <= DLML.INLINE_CUTOFF) {
+            return false;
+        }
+        int n = data.size();
+        if (n < DLML.INLINE_LOW) {
+            return true;
+        }
+        if (n >= DLML.INLINE_HIGH) {
+            return false;
+        }
+        return canal.estado() != 0;
+    }
+
+    /**
+     * Reduccion por suma de enteros. Acumula las contribuciones de todos los procesos.
+     * Mantiene el esquema de uso de gather del codigo original.
+     *
+     * @param value entero local
+     * @return suma total en el proceso raiz
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public int Reduce_Add(int value) throws MPIException {
+        int acc = 0;
+        int[] buffer = new int[total];
+
+        buffer[0] = value;
+        comm.gather(buffer, 1, MPI.INT, DLML.ROOT);
+        for (int i = 0; i < total; i++) {
+            acc += buffer[i];
+        }
+        return acc;
+    }
+
+    /**
+     * Reduccion por suma de enteros largos (p. ej. conteos de nodos que no caben en int).
+     *
+     * @param value entero largo local
+     * @return suma total en el proceso raiz
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public long Reduce_Add(long value) throws MPIException {
+        long acc = 0;
+        long[] buffer = new long[total];
+
+        buffer[0] = value;
+        comm.gather(buffer, 1, MPI.LONG, DLML.ROOT);
+        for (int i = 0; i < total; i++) {
+            acc += buffer[i];
+        }
+        return acc;
+    }
+
+    /**
+     * Reduccion por suma de dobles. Acumula las contribuciones de todos los procesos.
+     *
+     * @param value doble local
+     * @return suma total en el proceso raiz
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public double Reduce_Add(double value) throws MPIException {
+        double acc = 0.0;
+        double[] buffer = new double[total];
+
+        buffer[0] = value;
+        comm.gather(buffer, 1, MPI.DOUBLE, DLML.ROOT);
+        for (int i = 0; i < total; i++) {
+            acc += buffer[i];
+        }
+        return acc;
+    }
+
+    /**
+     * Reduccion por suma de flotantes. Acumula las contribuciones de todos los procesos.
+     *
+     * @param value flotante local
+     * @return suma total en el proceso raiz
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public float Reduce_Add(float value) throws MPIException {
+        float acc = 0.0f;
+        float[] buffer = new float[total];
+
+        buffer[0] = value;
+        comm.gather(buffer, 1, MPI.FLOAT, DLML.ROOT);
+        for (int i = 0; i < total; i++) {
+            acc += buffer[i];
+        }
+        return acc;
+    }
+
+
+
+    /**
+     * Reduce (en root) un objeto local con el de los demás procesos usando un combinador.
+     * Cada proceso envía su objeto serializado; el root acumula aplicando 'op'.
+     *
+     * @param local  objeto local
+     * @param cls    clase del objeto (para deserializar en root)
+     * @param op     combinador asociativo (a,b) -> resultado
+     * @return en root, el resultado acumulado; en procesos no-root, devuelve 'local'
+    */
+    public <T> T Reduce(T local, Class<T> cls, BinaryOperator<T> op)
+        throws MPIException, IOException {
+
+        if (id == DLML.ROOT) {
+            T acc = local;
+            for (int i = 1; i < total; i++) {
+                T other = MAPPER.readValue(recibirCarga(i), cls);
+                acc = op.apply(acc, other);
+            }
+            return acc;
+        } else {
+            enviarCarga(MAPPER.writeValueAsBytes(local), DLML.ROOT);
+            return local; // en no-root retornamos lo local (o null si prefieres)
+        }
+    }
+
+    /**
+     * Reduce (en root) un HyperLogLog local con el de los demas procesos.
+     * El intercambio es de tamaño fijo (2^p bytes por mensaje) sin importar
+     * cuantas claves distintas se hayan registrado.
+     *
+     * @param local sketch local; puede quedar combinado con los de otros procesos
+     * @return en root, el sketch global; en procesos no-root, 'local'
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public HyperLogLog Reduce_Merge(HyperLogLog local) throws MPIException, IOException {
+        return reduceSketch(local, HyperLogLog::fromBytes);
+    }
+
+    /**
+     * Reduce (en root) un Count-Min local con el de los demas procesos.
+     *
+     * @param local sketch local; puede quedar combinado con los de otros procesos
+     * @return en root, el sketch global; en procesos no-root, 'local'
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public CountMinSketch Reduce_Merge(CountMinSketch local) throws MPIException, IOException {
+        return reduceSketch(local, CountMinSketch::fromBytes);
+    }
+
+    /**
+     * Reduccion en arbol binomial de sketches: en cada ronda la mitad de los procesos
+     * activos envia su sketch binario a un compañero, que lo combina. El root recibe
+     * log2(total) mensajes en lugar de total - 1.
+     */
+    private <S extends Sketch<S>> S reduceSketch(S local, Function<byte[], S> decoder)
+        throws MPIException, IOException {
+
+        int rel = (id - DLML.ROOT + total) % total;
+
+        for (int mask = 1; mask < total; mask <<= 1) {
+            if ((rel & mask) != 0) {
+                int dest = (rel - mask + DLML.ROOT) % total;
+                enviarCarga(local.toBytes(), dest);
+                break;
+            } else if (rel + mask < total) {
+                int src = (rel + mask + DLML.ROOT) % total;
+                local.merge(decoder.apply(recibirCarga(src)));
+            }
+        }
+        return local;
+    }
+
+
+
+    /**
+     * Combina pares clave/valor por clave de forma distribuida (shuffle).
+     * Cada proceso particiona sus pares por hash de la clave, los intercambia con
+     * un unico alltoallv (un lote JSON compacto por destino) y combina localmente
+     * con 'op' lo que recibe. El resultado queda repartido: cada proceso devuelve
+     * solo las claves de su particion, y ninguna clave aparece en dos procesos.
+     *
+     * Claves soportadas: String, tipos primitivos envueltos (Integer, Long, Double,
+     * Character, Boolean, ...) y enums. El dueño de cada clave se calcula con una forma
+     * estable entre JVMs: el hashCode por valor de String y de los envueltos, y el
+     * nombre de los enums (su hashCode es de identidad y cambia entre procesos).
+     * Otros tipos se particionan por su toString(), que es tambien como Jackson los
+     * escribe como clave de mapa; solo funcionan si toString() depende unicamente del
+     * valor y hay un KeyDeserializer registrado en el mapper para leerlos de vuelta.
+     *
+     * @param local pares locales (no se modifica)
+     * @param kcls  clase de la clave (para deserializar)
+     * @param vcls  clase del valor (para deserializar)
+     * @param op    combinador asociativo de valores con la misma clave
+     * @return particion local del resultado global
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si hay un problema de serializacion/deserializacion
+     */
+    public <K, V> HashMap<K, V> ReduceByKey(Map<K, V> local, Class<K> kcls, Class<V> vcls,
+                                                  BinaryOperator<V> op)
+        throws MPIException, IOException {
+
+        // Particionado local; la particion propia no se serializa
+        HashMap<K, V> result = new HashMap<>();
+        ArrayList<HashMap<K, V>> parts = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            parts.add(i == id ? result : new HashMap<>());
+        }
+        for (Map.Entry<K, V> e : local.entrySet()) {
+            parts.get(partitionOf(e.getKey())).merge(e.getKey(), e.getValue(), op);
+        }
+
+        int[] sendCounts = new int[total];
+        int[] sendDispls = new int[total];
+        ArrayList<byte[]> lotes = new ArrayList<>(total);
+        int sendTotal = 0;
+        for (int i = 0; i < total; i++) {
+            byte[] lote = (i == id || parts.get(i).isEmpty()) ? new byte[0] : MAPPER.writeValueAsBytes(parts.get(i));
+            lotes.add(lote);
+            sendCounts[i] = lote.length;
+            sendDispls[i] = sendTotal;
+            sendTotal += lote.length;
+        }
+        byte[] sendBuf = new byte[sendTotal];
+        for (int i = 0; i < total; i++) {
+            System.arraycopy(lotes.get(i), 0, sendBuf, sendDispls[i], sendCounts[i]);
+        }
+        lotes.clear();
+
+        int[] recvCounts = new int[total];
+        comm.allToAll(sendCounts, 1, MPI.INT, recvCounts, 1, MPI.INT);
+        int[] recvDispls = new int[total];
+        int recvTotal = 0;
+        for (int i = 0; i < total; i++) {
+            recvDispls[i] = recvTotal;
+            recvTotal += recvCounts[i];
+        }
+        byte[] recvBuf = new byte[recvTotal];
+        comm.allToAllv(sendBuf, sendCounts, sendDispls, MPI.BYTE,
+                                 recvBuf, recvCounts, recvDispls, MPI.BYTE);
+
+        JavaType tipo = MAPPER.getTypeFactory().constructMapType(HashMap.class, kcls, vcls);
+        for (int i = 0; i < total; i++) {
+            if (recvCounts[i] == 0) continue;
+            HashMap<K, V> other = MAPPER.readValue(recvBuf, recvDispls[i], recvCounts[i], tipo);
+            for (Map.Entry<K, V> e : other.entrySet()) {
+                result.merge(e.getKey(), e.getValue(), op);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Recolecta en el raiz el tamaño de la particion de cada proceso
+     * (por ejemplo, la devuelta por {@link #ReduceByKey}).
+     *
+     * @param part particion local
+     * @return en el raiz, el tamaño por proceso; en otros procesos, solo el propio en [0]
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public int[] Gather_Sizes(Map<?, ?> part) throws MPIException {
+        int[] buffer = new int[total];
+        buffer[0] = part.size();
+        comm.gather(buffer, 1, MPI.INT, DLML.ROOT);
+        return buffer;
+    }
+
+    /**
+     * Envia una carga serializada a 'dest': TAM_BUFFER con {bytes enviados, bytes
+     * originales o 0} y DATOS_REMOTOS con la carga, comprimida si conviene.
+     */
+    private void enviarCarga(byte[] dd, int dest) throws MPIException {
+        int[] tam = new int[2];
+        ByteBuffer z = compresion.comprimir(dd, tam);
+        comm.send(tam, 2, MPI.INT, dest, DLML.TAM_BUFFER);
+        if (z != null) {
+            comm.send(z, tam[0], MPI.BYTE, dest, DLML.DATOS_REMOTOS);
+        } else {
+            comm.send(dd, dd.length, MPI.BYTE, dest, DLML.DATOS_REMOTOS);
+        }
+    }
+
+    /** Recibe de 'src' una carga enviada con {@link #enviarCarga}. */
+    private byte[] recibirCarga(int src) throws MPIException, IOException {
+        int[] tam = new int[2];
+        comm.recv(tam, 2, MPI.INT, src, DLML.TAM_BUFFER);
+        byte[] dd = new byte[tam[0]];
+        comm.recv(dd, tam[0], MPI.BYTE, src, DLML.DATOS_REMOTOS);
+        return (tam[1] == 0) ? dd : compresion.descomprimir(dd, tam[1]);
+    }
+
+    /**
+     * Proceso dueño de una clave en {@link #ReduceByKey}: debe ser el mismo en todos
+     * los procesos, asi que solo usa hashes definidos por el valor de la clave.
+     */
+    private int partitionOf(Object key) {
+        int h;
+        if (key instanceof String || key instanceof Integer || key instanceof Long
+                || key instanceof Double || key instanceof Float || key instanceof Short
+                || key instanceof Byte || key instanceof Character || key instanceof Boolean) {
+            h = key.hashCode();
+        } else if (key instanceof Enum) {
+            h = ((Enum<?>) key).name().hashCode();
+        } else {
+            h = String.valueOf(key).hashCode();
+        }
+        h ^= (h >>> 16);
+        return Math.floorMod(h, total);
+    }
+
+    /**
+     * Recolecta un objeto de cada proceso en el raiz y lo devuelve como lista.
+     * En el proceso NO raiz, el objeto se serializa a JSON y se envia al raiz.
+     * En el proceso raiz, se recibe cada objeto, se deserializa y se agrega a la lista.
+     *
+     * @param o objeto local a enviar o agregar (en el raiz)
+     * @param <T> tipo inferido para el resultado en el raiz
+     * @return en el proceso raiz, una lista con un objeto por proceso; en otros procesos, una lista vacia
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si hay un problema de serializacion/deserializacion
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ArrayList<T> Gather(Object o) throws MPIException, IOException {
+        ArrayList<T> result = new ArrayList<>();
+
+        if (id == DLML.ROOT) {
+            result.add((T) o);
+            for (int i = 1; i < total; i++) {
+                Object aux = MAPPER.readValue(recibirCarga(i), o.getClass());
+                result.add((T) aux);
+            }
+        } else {
+            enviarCarga(MAPPER.writeValueAsBytes(o), DLML.ROOT);
+        }
+        return result;
+    }
+
+    /**
+     * Difunde un arreglo de solo lectura desde el raiz con una sola copia por nodo
+     * (ver {@link NodeShared}): los procesos de un nodo comparten la misma memoria
+     * mapeada. Operacion colectiva.
+     *
+     * @param data arreglo a difundir (solo se usa en el raiz; en los demas puede ser null)
+     * @return vista de solo lectura del arreglo en todos los procesos
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si falla el mapeo de la memoria compartida
+     */
+    public IntBuffer Bcast(int[] data) throws MPIException, IOException {
+        long n = (data != null) ? (long) data.length * Integer.BYTES : 0;
+        return difundir(n, MPI.INT, Integer.BYTES, b -> b.asIntBuffer().put(data)).asIntBuffer();
+    }
+
+    /** @see #Bcast(int[]) */
+    public LongBuffer Bcast(long[] data) throws MPIException, IOException {
+        long n = (data != null) ? (long) data.length * Long.BYTES : 0;
+        return difundir(n, MPI.LONG, Long.BYTES, b -> b.asLongBuffer().put(data)).asLongBuffer();
+    }
+
+    /** @see #Bcast(int[]) */
+    public DoubleBuffer Bcast(double[] data) throws MPIException, IOException {
+        long n = (data != null) ? (long) data.length * Double.BYTES : 0;
+        return difundir(n, MPI.DOUBLE, Double.BYTES, b -> b.asDoubleBuffer().put(data)).asDoubleBuffer();
+    }
+
+    /** @see #Bcast(int[]) */
+    public ByteBuffer Bcast(byte[] data) throws MPIException, IOException {
+        long n = (data != null) ? data.length : 0;
+        return difundir(n, MPI.BYTE, 1, b -> b.put(data));
+    }
+
+    private ByteBuffer difundir(long bytes, Datatype tipo, int unidad, Consumer<ByteBuffer> llenar)
+        throws MPIException, IOException {
+        if (compartido == null) {
+            compartido = new NodeShared(comm);
+        }
+        return compartido.difundir(bytes, tipo, unidad, llenar);
+    }
+
+    /**
+     * @return copia de los contadores de balanceo de este proceso (leer entre fases)
+     */
+    public DLMLStats Stats() {
+        return stats.snapshot();
+    }
+
+    /**
+     * Imprime en el raiz una linea CSV (prefijo "CSV,", columnas de
+     * {@link DLML#CSV_HEADER}) con el tiempo de la corrida y los contadores de
+     * balanceo sumados entre procesos. Operacion colectiva; llamar entre fases.
+     *
+     * @param app      nombre de la aplicacion
+     * @param params   parametros del problema (sin comas)
+     * @param segundos tiempo de la corrida (makespan) medido por el llamador
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si hay un problema de serializacion/deserializacion
+     */
+    public void Report_Csv(String app, String params, double segundos) throws MPIException, IOException {
+        ArrayList<DLMLStats> todos = Gather(stats.snapshot());
+        if (id != DLML.ROOT) {
+            return;
+        }
+        long items = 0, robos = 0, fallidos = 0, robados = 0, ocioTotal = 0, ocioMax = 0;
+        for (DLMLStats s : todos) {
+            items += s.getItemsProcessed();
+            robos += s.getSteals();
+            fallidos += s.getFailedSteals();
+            robados += s.getItemsStolen();
+            ocioTotal += s.getIdleNanos();
+            ocioMax = Math.max(ocioMax, s.getIdleNanos());
+        }
+        System.out.printf(Locale.ROOT, "CSV,%s,%s,%d,%s,%.6f,%d,%d,%d,%d,%.6f,%.6f%n",
+                app, strategy.getClass().getSimpleName(), total, params, segundos,
+                items, robos, fallidos, robados, ocioTotal / 1e9 / total, ocioMax / 1e9);
+    }
+
+    /**
+     * Ejecuta el runnable suministrado solo en el proceso raiz.
+     *
+     * @param r accion a ejecutar una unica vez en el proceso raiz
+     */
+    public void OnlyOne(DLMLOne r) {
+        if (id == DLML.ROOT && r != null) {
+            r.run();
+        }
+    }
+}
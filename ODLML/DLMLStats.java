@@ -0,0 +1,65 @@
+// DLMLStats.java
+/**
+ * Contadores de balanceo de un contexto DLML (POJO serializable con Jackson para
+ * recolectarlos con Gather).
+ *
+ * El hilo de trabajo actualiza itemsProcessed e idleNanos (tiempo bloqueado en Get
+ * esperando al protocolo); el hilo de protocolo actualiza los de robos y
+ * donaciones. Cada campo lo escribe un solo hilo; deben leerse entre fases
+ * (despues de que Get devolvio null).
+ */
+public class DLMLStats {
+
+    private long itemsProcessed;
+    private long idleNanos;
+    private long steals;
+    private long failedSteals;
+    private long itemsStolen;
+    private long itemsDonated;
+
+    /** Constructor por defecto (requerido por Jackson). */
+    public DLMLStats() {
+    }
+
+    public long getItemsProcessed() { return itemsProcessed; }
+    public void setItemsProcessed(long v) { itemsProcessed = v; }
+
+    public long getIdleNanos() { return idleNanos; }
+    public void setIdleNanos(long v) { idleNanos = v; }
+
+    public long getSteals() { return steals; }
+    public void setSteals(long v) { steals = v; }
+
+    public long getFailedSteals() { return failedSteals; }
+    public void setFailedSteals(long v) { failedSteals = v; }
+
+    public long getItemsStolen() { return itemsStolen; }
+    public void setItemsStolen(long v) { itemsStolen = v; }
+
+    public long getItemsDonated() { return itemsDonated; }
+    public void setItemsDonated(long v) { itemsDonated = v; }
+
+    /** Copia de los contadores actuales. */
+    DLMLStats snapshot() {
+        DLMLStats s = new DLMLStats();
+        s.itemsProcessed = itemsProcessed;
+        s.idleNanos = idleNanos;
+        s.steals = steals;
+        s.failedSteals = failedSteals;
+        s.itemsStolen = itemsStolen;
+        s.itemsDonated = itemsDonated;
+        return s;
+    }
+
+    void processed() { itemsProcessed++; }
+    void idle(long nanos) { idleNanos += nanos; }
+    void steal(int items) { steals++; itemsStolen += items; }
+    void failedSteal() { failedSteals++; }
+    void donated(int items) { itemsDonated += items; }
+
+    @Override
+    public String toString() {
+        return "DLMLStats{items=" + itemsProcessed + ", idle=" + idleNanos / 1e9 + "s, steals=" + steals
+                + ", failed=" + failedSteals + ", stolen=" + itemsStolen + ", donated=" + itemsDonated + "}";
+    }
+}
@@ -0,0 +1,19 @@
+// Expander.java
+import java.util.List;
+
+/**
+ * Expande un elemento de trabajo en sus hijos inmediatos. Lo usa
+ * {@link DLMLContext#Distribute} para abrir la frontera inicial en el proceso raiz.
+ *
+ * @param <T> tipo de los elementos
+ */
+@FunctionalInterface
+interface Expander<T extends DataLike> {
+
+    /**
+     * @param item elemento a expandir
+     * @return hijos del elemento (reemplazan al elemento en la frontera); null o vacio
+     *         si el elemento no se expande y debe distribuirse tal cual
+     */
+    List<T> expand(T item);
+}
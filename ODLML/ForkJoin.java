@@ -0,0 +1,301 @@
+// ForkJoin.java
+import mpi.Intracomm;
+import mpi.MPI;
+import mpi.MPIException;
+import mpi.Status;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Fork-join distribuido sobre una bolsa de trabajo DLML.
+ *
+ * Una {@link Task} puede crear hijos con {@link #Spawn} y esperar sus resultados con
+ * {@link #Join}, aunque otros procesos los hayan robado. Los hijos son elementos de
+ * la cola de un {@link DLMLContext} propio, asi que se balancean con la estrategia
+ * configurada. El resultado de cada tarea vuelve al proceso dueño del join (un
+ * mensaje RESULTADO con el resultado en JSON, o directo si el hijo corrio en el
+ * mismo proceso) y, al completarse el join, su {@link Continuation} se ejecuta alli.
+ *
+ * Ejemplo:
+ * <pre>
+ *   protected void compute(ForkJoin&lt;Long&gt; fj) throws MPIException, IOException {
+ *       if (n &lt; 20) { fj.Complete(fibSecuencial(n)); return; }
+ *       fj.Spawn(new Fib(n - 1));
+ *       fj.Spawn(new Fib(n - 2));
+ *       fj.Join((r, f) -&gt; f.Complete(r.get(0) + r.get(1)));
+ *   }
+ * </pre>
+ *
+ * Todos los metodos se llaman desde el hilo de trabajo. {@link #Invoke} es colectiva.
+ *
+ * @param <R> tipo de los resultados (serializable con Jackson)
+ */
+final class ForkJoin<R> {
+
+    /** Etiqueta de los mensajes de resultado (en un comunicador propio). */
+    static final int RESULTADO = 120;
+
+    /** Join de la tarea raiz: su resultado es el de {@link #Invoke}. */
+    private static final int RAIZ = -1;
+
+    private static final ObjectMapper MAPPER = ItemCodec.MAPPER;
+
+    private final DLMLContext ctx;
+    private final Intracomm rcomm;
+    private final Class<R> resultClass;
+
+    /** Joins abiertos en este proceso, por identificador. */
+    private final HashMap<Integer, Pendiente<R>> pendientes = new HashMap<>();
+    private int siguienteJoin = 0;
+
+    /** Mensajes RESULTADO enviados y recibidos (deteccion de resultados en transito). */
+    private long enviados = 0;
+    private long recibidos = 0;
+
+    /** Tarea o continuacion en ejecucion. */
+    private Marco actual = null;
+
+    private R raiz;
+
+    /** Join abierto: continuacion, resultados recibidos y a donde entregar el propio. */
+    private static final class Pendiente<R> {
+        final Continuation<R> k;
+        final Object[] resultados;
+        int faltan;
+        final int owner;
+        final int join;
+        final int slot;
+
+        Pendiente(Continuation<R> k, int hijos, Marco m) {
+            this.k = k;
+            this.resultados = new Object[hijos];
+            this.faltan = hijos;
+            this.owner = m.owner;
+            this.join = m.join;
+            this.slot = m.slot;
+        }
+    }
+
+    /** Estado de ejecucion de una tarea o continuacion. */
+    private static final class Marco {
+        final int owner;
+        final int join;
+        final int slot;
+        int nuevoJoin = -1;
+        int hijos = 0;
+        boolean cerrado = false;
+
+        Marco(int owner, int join, int slot) {
+            this.owner = owner;
+            this.join = join;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Crea el runtime y su contexto DLML. Operacion colectiva sobre 'comm'.
+     *
+     * @param comm        comunicador
+     * @param resultClass clase de los resultados (para deserializarlos al llegar)
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    ForkJoin(Intracomm comm, Class<R> resultClass) throws MPIException {
+        this.ctx = DLML.NewContext(comm, Task.class);
+        this.rcomm = comm.dup();
+        this.resultClass = resultClass;
+    }
+
+    /**
+     * @return contexto DLML subyacente (cola y estrategia de balanceo)
+     */
+    public DLMLContext getContext() {
+        return ctx;
+    }
+
+    /**
+     * Ejecuta una computacion fork-join completa. Operacion colectiva: la tarea raiz
+     * se toma del proceso raiz (en los demas puede ser null) y todos los procesos
+     * ejecutan tareas hasta que no queda trabajo, joins por completar ni resultados
+     * en transito. Puede llamarse varias veces.
+     *
+     * @param root tarea raiz (solo se usa en el proceso raiz)
+     * @return en root, el resultado de la tarea raiz; en procesos no-root, null
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si hay un problema de serializacion/deserializacion
+     */
+    @SuppressWarnings("unchecked")
+    public R Invoke(Task<R> root) throws MPIException, IOException {
+        raiz = null;
+        if (ctx.id == DLML.ROOT && root != null) {
+            root.setOwner(DLML.ROOT);
+            root.setJoin(RAIZ);
+            root.setSlot(0);
+            ctx.Insert(root);
+        }
+
+        long[] global = new long[3];
+        do {
+            Task<R> t;
+            while ((t = ctx.Get(Task.class)) != null) {
+                recibirResultados();
+                ejecutar(t);
+            }
+
+            // Fase cerrada: las colas estan vacias, pero puede haber resultados en
+            // transito cuyas continuaciones generen trabajo nuevo.
+            do {
+                recibirResultados();
+                global[0] = enviados;
+                global[1] = recibidos;
+                global[2] = ctx.data.size();
+                ctx.comm.allReduce(global, 3, MPI.LONG, MPI.SUM);
+            } while (global[0] != global[1]);
+        } while (global[2] > 0);
+
+        if (!pendientes.isEmpty()) {
+            throw new IllegalStateException(pendientes.size() + " joins sin completar en el proceso " + ctx.id);
+        }
+        return raiz;
+    }
+
+    /**
+     * Crea una tarea hija de la tarea en ejecucion. Su resultado se entrega al
+     * {@link #Join} que la tarea debe llamar antes de regresar.
+     *
+     * @param child tarea hija
+     */
+    public void Spawn(Task<R> child) {
+        Marco m = marcoAbierto("Spawn");
+        if (m.nuevoJoin < 0) {
+            m.nuevoJoin = siguienteJoin++;
+        }
+        child.setOwner(ctx.id);
+        child.setJoin(m.nuevoJoin);
+        child.setSlot(m.hijos++);
+        ctx.Insert(child);
+    }
+
+    /**
+     * Registra la continuacion de la tarea en ejecucion, que se ejecutara en este
+     * proceso con los resultados de todos los hijos creados con {@link #Spawn}.
+     *
+     * @param k continuacion
+     */
+    public void Join(Continuation<R> k) {
+        Marco m = marcoAbierto("Join");
+        if (m.hijos == 0) {
+            throw new IllegalStateException("Join sin hijos: use Complete");
+        }
+        m.cerrado = true;
+        pendientes.put(m.nuevoJoin, new Pendiente<>(k, m.hijos, m));
+    }
+
+    /**
+     * Termina la tarea en ejecucion con un resultado, que se entrega al join que
+     * la espera (en este u otro proceso).
+     *
+     * @param value resultado
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si hay un problema de serializacion
+     */
+    public void Complete(R value) throws MPIException, IOException {
+        Marco m = marcoAbierto("Complete");
+        if (m.hijos > 0) {
+            throw new IllegalStateException("Complete despues de Spawn: use Join");
+        }
+        m.cerrado = true;
+        entregar(m.owner, m.join, m.slot, value);
+    }
+
+    /**
+     * Detiene el contexto DLML y libera el comunicador de resultados. Colectiva.
+     *
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    public void Finalize() throws MPIException {
+        ctx.Finalize();
+        rcomm.free();
+    }
+
+    private Marco marcoAbierto(String op) {
+        if (actual == null || actual.cerrado) {
+            throw new IllegalStateException(op + " fuera de una tarea o despues de Join/Complete");
+        }
+        return actual;
+    }
+
+    /** Ejecuta una tarea o continuacion, verificando que termine con Join o Complete. */
+    private void correr(Marco m, Task<R> t, Pendiente<R> p) throws MPIException, IOException {
+        Marco previo = actual;
+        actual = m;
+        try {
+            if (t != null) {
+                t.compute(this);
+            } else {
+                @SuppressWarnings("unchecked")
+                R[] r = (R[]) p.resultados;
+                p.k.resume(Arrays.asList(r), this);
+            }
+            if (!m.cerrado) {
+                throw new IllegalStateException(m.hijos > 0
+                        ? "La tarea hizo Spawn sin Join"
+                        : "La tarea termino sin Complete ni Join");
+            }
+        } finally {
+            actual = previo;
+        }
+    }
+
+    private void ejecutar(Task<R> t) throws MPIException, IOException {
+        correr(new Marco(t.getOwner(), t.getJoin(), t.getSlot()), t, null);
+    }
+
+    /** Entrega un resultado a su join: localmente o con un mensaje al dueño. */
+    private void entregar(int owner, int join, int slot, R value) throws MPIException, IOException {
+        if (owner == ctx.id) {
+            llegada(join, slot, value);
+            return;
+        }
+        byte[] json = MAPPER.writeValueAsBytes(value);
+        byte[] msg = new byte[8 + json.length];
+        ByteBuffer.wrap(msg).putInt(join).putInt(slot).put(json);
+        rcomm.send(msg, msg.length, MPI.BYTE, owner, RESULTADO);
+        enviados++;
+    }
+
+    /** Registra un resultado; si completa su join, ejecuta la continuacion. */
+    private void llegada(int join, int slot, R value) throws MPIException, IOException {
+        if (join == RAIZ) {
+            raiz = value;
+            return;
+        }
+        Pendiente<R> p = pendientes.get(join);
+        if (p == null) {
+            throw new IllegalStateException("Resultado para un join desconocido: " + join);
+        }
+        p.resultados[slot] = value;
+        if (--p.faltan == 0) {
+            pendientes.remove(join);
+            correr(new Marco(p.owner, p.join, p.slot), null, p);
+        }
+    }
+
+    /** Procesa los mensajes RESULTADO que ya llegaron, sin bloquear. */
+    private void recibirResultados() throws MPIException, IOException {
+        Status st;
+        while ((st = rcomm.iProbe(MPI.ANY_SOURCE, RESULTADO)) != null) {
+            int n = st.getCount(MPI.BYTE);
+            byte[] msg = new byte[n];
+            rcomm.recv(msg, n, MPI.BYTE, st.getSource(), RESULTADO);
+            recibidos++;
+            ByteBuffer bb = ByteBuffer.wrap(msg);
+            int join = bb.getInt();
+            int slot = bb.getInt();
+            llegada(join, slot, MAPPER.readValue(msg, 8, n - 8, resultClass));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+// HeapQueue.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Cola de elementos como objetos en el heap (comportamiento original de DLML).
+ * Los lotes se codifican al donar y se decodifican al recibir, usando buffers
+ * directos reutilizables.
+ */
+final class HeapQueue implements WorkQueue {
+
+    private final ArrayDeque<DataLike> items = new ArrayDeque<>();
+    private final SerialBuffer envio = new SerialBuffer(4096);
+    private final SerialBuffer recepcion = new SerialBuffer(4096);
+    private final Class<? extends DataLike> cls;
+    private int recibidos;
+
+    /** Elementos de la cola que implementan {@link AffinityLike}. */
+    private int conAfinidad;
+
+    /**
+     * @param cls clase de los elementos (para decodificar lotes recibidos)
+     */
+    HeapQueue(Class<? extends DataLike> cls) {
+        this.cls = cls;
+    }
+
+    @Override
+    public void addFirst(DataLike item) {
+        items.addFirst(item);
+        if (item instanceof AffinityLike) conAfinidad++;
+    }
+
+    @Override
+    public DataLike removeFirst() {
+        DataLike item = items.removeFirst();
+        if (item instanceof AffinityLike) conAfinidad--;
+        return item;
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public ByteBuffer takeBatch(int c) throws IOException {
+        envio.clear();
+        for (int i = 0; i < c; i++) {
+            DataLike item = removeFirst();
+            ItemCodec.encode(item, envio);
+            if (ItemPool.AUTO) DLML.POOL.push(item);
+        }
+        return envio.flip();
+    }
+
+    /**
+     * Recorre la cola hasta tres veces (una por nivel de preferencia) mientras haya
+     * elementos afines; sin ellos es igual a {@link #takeBatch(int)}.
+     */
+    @Override
+    public ByteBuffer takeBatch(int c, String destino, String propio) throws IOException {
+        if (conAfinidad == 0 || destino == null) {
+            return takeBatch(c);
+        }
+        envio.clear();
+        int tomados = 0;
+        for (int nivel = 0; nivel < 3 && tomados < c; nivel++) {
+            Iterator<DataLike> it = items.iterator();
+            while (tomados < c && it.hasNext()) {
+                DataLike item = it.next();
+                if (preferencia(item, destino, propio) != nivel) continue;
+                it.remove();
+                if (item instanceof AffinityLike) conAfinidad--;
+                ItemCodec.encode(item, envio);
+                if (ItemPool.AUTO) DLML.POOL.push(item);
+                tomados++;
+            }
+        }
+        return envio.flip();
+    }
+
+    /** 0: afin al receptor; 1: sin afinidad o de otro nodo; 2: afin a este nodo. */
+    private static int preferencia(DataLike item, String destino, String propio) {
+        if (!(item instanceof AffinityLike)) return 1;
+        String nodo = ((AffinityLike) item).affinity();
+        if (nodo == null || nodo.isEmpty()) return 1;
+        if (nodo.equals(destino)) return 0;
+        return nodo.equals(propio) ? 2 : 1;
+    }
+
+    @Override
+    public ByteBuffer reserveBatch(int bytes) {
+        recibidos = bytes;
+        return recepcion.reserve(bytes);
+    }
+
+    @Override
+    public void commitBatch(int c) throws IOException {
+        int pos = 0;
+        for (int i = 0; i < c && pos < recibidos; i++) {
+            int len = recepcion.getInt(pos);
+            DataLike item = ItemCodec.decode(recepcion, pos + 4, len, cls);
+            items.addLast(item);
+            if (item instanceof AffinityLike) conAfinidad++;
+            pos += 4 + len;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+// HyperLogLog.java
+import java.nio.ByteBuffer;
+
+/**
+ * Sketch HyperLogLog para estimar el numero de elementos distintos.
+ *
+ * Usa 2^p registros de un byte; con p = 12 ocupa 4 KB y el error estandar es
+ * aproximadamente 1.04 / sqrt(2^p) (~1.6%). Dos sketches con la misma precision se
+ * combinan tomando el maximo registro a registro.
+ *
+ * Formato binario: [p:byte][registros:2^p bytes].
+ */
+public class HyperLogLog implements Sketch<HyperLogLog> {
+
+    /** Precision por defecto (4096 registros). */
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int p;
+    private final byte[] registros;
+
+    /** Crea un sketch con la precision por defecto. */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Crea un sketch vacio.
+     *
+     * @param p precision, entre 4 y 18 (2^p registros)
+     */
+    public HyperLogLog(int p) {
+        if (p < 4 || p > 18) {
+            throw new IllegalArgumentException("Precision fuera de rango [4,18]: " + p);
+        }
+        this.p = p;
+        this.registros = new byte[1 << p];
+    }
+
+    /**
+     * Reconstruye un sketch a partir de su forma binaria.
+     *
+     * @param bytes bytes producidos por {@link #toBytes()}
+     * @return sketch equivalente
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog h = new HyperLogLog(bytes[0]);
+        if (bytes.length != h.registros.length + 1) {
+            throw new IllegalArgumentException("Longitud invalida para HyperLogLog: " + bytes.length);
+        }
+        System.arraycopy(bytes, 1, h.registros, 0, h.registros.length);
+        return h;
+    }
+
+    /**
+     * Registra una clave de texto.
+     *
+     * @param key clave
+     */
+    public void offer(CharSequence key) {
+        offerHash(Sketch.hash64(key));
+    }
+
+    /**
+     * Registra una clave entera.
+     *
+     * @param key clave
+     */
+    public void offer(long key) {
+        offerHash(Sketch.mix64(key));
+    }
+
+    /**
+     * Registra un hash de 64 bits ya calculado (debe estar bien distribuido).
+     *
+     * @param hash hash de la clave
+     */
+    public void offerHash(long hash) {
+        int idx = (int) (hash >>> (64 - p));
+        // Bit centinela para acotar el rango a 64 - p + 1
+        long w = (hash << p) | (1L << (p - 1));
+        byte rho = (byte) (Long.numberOfLeadingZeros(w) + 1);
+        if (rho > registros[idx]) {
+            registros[idx] = rho;
+        }
+    }
+
+    /**
+     * Estima el numero de claves distintas registradas.
+     *
+     * @return cardinalidad estimada
+     */
+    public long estimate() {
+        int m = registros.length;
+        double suma = 0.0;
+        int ceros = 0;
+        for (byte r : registros) {
+            suma += 1.0 / (1L << r);
+            if (r == 0) ceros++;
+        }
+        double alpha = (m >= 128) ? 0.7213 / (1.0 + 1.079 / m)
+                     : (m == 64) ? 0.709
+                     : (m == 32) ? 0.697 : 0.673;
+        double e = alpha * m * (double) m / suma;
+        if (e <= 2.5 * m && ceros > 0) {
+            // Correccion para rango pequeño (linear counting)
+            e = m * Math.log((double) m / ceros);
+        }
+        return Math.round(e);
+    }
+
+    /**
+     * Precision del sketch.
+     *
+     * @return p (2^p registros)
+     */
+    public int getPrecision() {
+        return p;
+    }
+
+    @Override
+    public void merge(HyperLogLog other) {
+        if (other.p != p) {
+            throw new IllegalArgumentException("Precision distinta: " + p + " vs " + other.p);
+        }
+        for (int i = 0; i < registros.length; i++) {
+            if (other.registros[i] > registros[i]) {
+                registros[i] = other.registros[i];
+            }
+        }
+    }
+
+    @Override
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(registros.length + 1).put((byte) p).put(registros).array();
+    }
+}
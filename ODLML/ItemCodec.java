@@ -0,0 +1,54 @@
+// ItemCodec.java
+import java.io.IOException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Codificacion de elementos de trabajo para la cola y las donaciones.
+ *
+ * Cada elemento se escribe como un registro [longitud:int][JSON]; un lote donado es
+ * la concatenacion de sus registros. Al decodificar se crean instancias nuevas, o
+ * se reutilizan las del pool de DLML con -Dodlml.pool.auto=true (ver {@link ItemPool}).
+ */
+final class ItemCodec {
+
+    /** Mapper JSON compartido (thread-safe una vez configurado). */
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ItemCodec() {
+    }
+
+    /**
+     * Agrega el registro de un elemento al final del buffer.
+     *
+     * @param item elemento a codificar
+     * @param out  buffer destino
+     * @return longitud total del registro (4 + bytes JSON)
+     * @throws IOException si falla la serializacion
+     */
+    static int encode(DataLike item, SerialBuffer out) throws IOException {
+        int inicio = out.size();
+        out.writeInt(0);
+        MAPPER.writeValue(out.append(), item);
+        int len = out.size() - inicio - 4;
+        out.putInt(inicio, len);
+        return len + 4;
+    }
+
+    /**
+     * Decodifica el JSON de un elemento.
+     *
+     * @param in  buffer origen
+     * @param off posicion del JSON (despues de la longitud)
+     * @param len longitud del JSON
+     * @param cls clase del elemento
+     * @return elemento decodificado
+     * @throws IOException si falla la deserializacion
+     */
+    static DataLike decode(SerialBuffer in, int off, int len, Class<? extends DataLike> cls) throws IOException {
+        DataLike reciclado = ItemPool.AUTO ? DLML.POOL.pop(cls) : null;
+        if (reciclado != null) {
+            return MAPPER.readerForUpdating(reciclado).readValue(in.input(off, len));
+        }
+        return MAPPER.readValue(in.input(off, len), cls);
+    }
+}
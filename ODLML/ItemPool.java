@@ -0,0 +1,62 @@
+// ItemPool.java
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Pilas acotadas de elementos {@link DataLike} reciclados, una por clase.
+ *
+ * Solo recibe los elementos que la aplicacion devuelve con DLML.Recycle, y los
+ * entrega DLML.Obtain. Con -Dodlml.pool.auto=true el hilo de protocolo tambien
+ * recicla los elementos que dona y decodifica los recibidos sobre instancias del
+ * pool; en ese modo los campos que Jackson no escribe (@JsonIgnore, caches
+ * transitorias) conservan el valor que tenian al reciclarse. Por omision los
+ * elementos recibidos son instancias nuevas.
+ *
+ * Lo usan el hilo de trabajo y el de protocolo, por lo que sus operaciones estan
+ * sincronizadas. Cada clase guarda a lo mas 'capacidad' elementos; los extra se
+ * descartan, asi que una clase que nadie pide no impide reciclar las demas.
+ */
+final class ItemPool {
+
+    /** Reciclado automatico por el protocolo (-Dodlml.pool.auto, desactivado por omision). */
+    static final boolean AUTO = Boolean.getBoolean("odlml.pool.auto");
+
+    private final HashMap<Class<?>, ArrayDeque<DataLike>> pilas = new HashMap<>();
+    private final int capacidad;
+
+    /**
+     * @param capacidad numero maximo de elementos guardados por clase (0 desactiva el pool)
+     */
+    ItemPool(int capacidad) {
+        this.capacidad = Math.max(capacidad, 0);
+    }
+
+    /**
+     * Guarda un elemento para reutilizarlo.
+     *
+     * @param item elemento que el llamador ya no usara
+     */
+    synchronized void push(DataLike item) {
+        if (item == null || capacidad == 0) {
+            return;
+        }
+        ArrayDeque<DataLike> pila = pilas.computeIfAbsent(item.getClass(), k -> new ArrayDeque<>());
+        if (pila.size() < capacidad) {
+            pila.push(item);
+        }
+    }
+
+    /**
+     * Extrae un elemento reciclado del tipo pedido. La clase debe coincidir
+     * exactamente: una subclase (p. ej. de {@link Task}) no sirve para decodificar
+     * o llenar otra.
+     *
+     * @param cls clase esperada
+     * @param <T> tipo del elemento
+     * @return elemento reciclado, o null si no hay uno del tipo pedido
+     */
+    synchronized <T extends DataLike> T pop(Class<T> cls) {
+        ArrayDeque<DataLike> pila = pilas.get(cls);
+        return (pila == null || pila.isEmpty()) ? null : cls.cast(pila.pop());
+    }
+}
@@ -1,3 +1,23 @@
+import java.util.Collections;
+import java.util.List;
+
 public interface LoadBalancingStrategy {
     int selectDonor(int[] info, int myId);
+
+    /**
+     * Decide uno o varios robos con la informacion completa de la subasta. Las
+     * peticiones se envian a la vez y el trabajador continua cuando respondieron
+     * todos los donadores. Por omision pide a un solo donador ({@link #selectDonor})
+     * y deja que el decida la cantidad.
+     *
+     * @param ctx tamaños, topologia e historial de robos
+     * @return robos a realizar; vacio si no hay donador
+     */
+    default List<StealRequest> selectDonors(StealContext ctx) {
+        int donor = selectDonor(ctx.getSizes(), ctx.getMyId());
+        if (donor < 0 || donor == ctx.getMyId()) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new StealRequest(donor, 0));
+    }
 }
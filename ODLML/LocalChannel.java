@@ -0,0 +1,178 @@
+// LocalChannel.java
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Canal sin locks entre el hilo de trabajo de un contexto y su hilo de protocolo,
+ * dentro del mismo proceso. Sustituye los mensajes MPI que el trabajador se enviaba
+ * a si mismo y las banderas compartidas sin sincronizacion; MPI queda solo para el
+ * trafico entre procesos.
+ *
+ * Tres piezas:
+ *  - Buzon (trabajador -> protocolo): un aviso a la vez (LISTA_VACIA,
+ *    LISTA_DE_DATOS, TAM_LISTA o TERMINAR), publicado con CAS. El trabajador siempre
+ *    espera la respuesta antes de avisar otra vez, asi que basta una casilla.
+ *  - Estado (protocolo -> trabajador): bits atomicos con las peticiones remotas
+ *    pendientes ({@link #PETICIONES}: DAME_DATOS, {@link #INFO}: PETICION_TAM_LISTA)
+ *    que el trabajador consulta en Get con una sola lectura volatil.
+ *  - Permisos (protocolo -> trabajador): continuar tras un aviso y fin de fase,
+ *    con semantica de semaforo (el permiso puede llegar antes que la espera).
+ *
+ * Las esperas giran brevemente (la respuesta del protocolo suele tardar
+ * nanosegundos) y luego se estacionan con LockSupport.park hasta un unpark.
+ */
+final class LocalChannel {
+
+    /** Hay peticiones DAME_DATOS pendientes de atender. */
+    static final int PETICIONES = 1;
+
+    /** Hay peticiones PETICION_TAM_LISTA pendientes de contestar. */
+    static final int INFO = 2;
+
+    /**
+     * Giros antes de estacionar a un hilo que espera (-Dodlml.spin). Con un solo
+     * procesador girar solo retrasa al hilo que debe responder, asi que no se gira.
+     */
+    private static final int GIROS = Integer.getInteger("odlml.spin",
+            Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0);
+
+    /** Maximo estacionamiento del protocolo sin eventos (-Dodlml.poll.max, en microsegundos). */
+    private static final long SONDEO_MAX = Long.getLong("odlml.poll.max", 100L) * 1000L;
+    private static final long SONDEO_MIN = 1000L;
+
+    private final AtomicInteger buzon = new AtomicInteger(0);
+    private final AtomicInteger estado = new AtomicInteger(0);
+    private final AtomicInteger continuar = new AtomicInteger(0);
+    private final AtomicInteger finFase = new AtomicInteger(0);
+
+    private volatile Thread trabajador;
+    private volatile Thread protocolo;
+
+    /** Sondeos vacios consecutivos del protocolo y su estacionamiento actual (ns). */
+    private int vacios = 0;
+    private long sondeo = SONDEO_MIN;
+
+    /** Registra el hilo de protocolo (para despertarlo al dejar un aviso). */
+    void setProtocolo(Thread t) {
+        protocolo = t;
+    }
+
+    // ---------------------------------------------------------------------
+    // Trabajador
+    // ---------------------------------------------------------------------
+
+    /**
+     * Deja un aviso para el protocolo y lo despierta.
+     *
+     * @param tag aviso (etiqueta DLML)
+     */
+    void avisar(int tag) {
+        trabajador = Thread.currentThread();
+        while (!buzon.compareAndSet(0, tag)) {
+            Thread.onSpinWait();
+        }
+        LockSupport.unpark(protocolo);
+    }
+
+    /** Espera el permiso para continuar tras un aviso. */
+    void esperar() {
+        adquirir(continuar);
+    }
+
+    /** Espera el cierre de la fase. */
+    void esperarFin() {
+        adquirir(finFase);
+    }
+
+    /** @return bits de peticiones pendientes ({@link #PETICIONES}, {@link #INFO}) */
+    int estado() {
+        return estado.get();
+    }
+
+    /** @return true si el bit indicado esta activo */
+    boolean hay(int bit) {
+        return (estado.get() & bit) != 0;
+    }
+
+    private void adquirir(AtomicInteger permisos) {
+        trabajador = Thread.currentThread();
+        int giros = 0;
+        while (true) {
+            int v = permisos.get();
+            if (v > 0) {
+                if (permisos.compareAndSet(v, v - 1)) return;
+            } else if (giros < GIROS) {
+                giros++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Protocolo
+    // ---------------------------------------------------------------------
+
+    /**
+     * Toma el aviso pendiente del trabajador.
+     *
+     * @return etiqueta del aviso, o 0 si no hay
+     */
+    int tomarAviso() {
+        return (buzon.get() == 0) ? 0 : buzon.getAndSet(0);
+    }
+
+    /** Activa un bit de peticiones pendientes. */
+    void marcar(int bit) {
+        estado.getAndUpdate(e -> e | bit);
+    }
+
+    /** Desactiva un bit de peticiones pendientes. */
+    void limpiar(int bit) {
+        estado.getAndUpdate(e -> e & ~bit);
+    }
+
+    /** Permite continuar al trabajador (respuesta a su aviso). */
+    void liberar() {
+        liberar(continuar);
+    }
+
+    /** Avisa al trabajador que la fase termino. */
+    void liberarFin() {
+        liberar(finFase);
+    }
+
+    private void liberar(AtomicInteger permisos) {
+        permisos.incrementAndGet();
+        LockSupport.unpark(trabajador);
+    }
+
+    /**
+     * Espera del protocolo cuando no hubo avisos ni mensajes MPI: gira unas veces y
+     * despues se estaciona con un tiempo que se duplica hasta -Dodlml.poll.max, para
+     * seguir sondeando MPI sin ocupar un nucleo. Un aviso del trabajador lo despierta
+     * de inmediato.
+     *
+     * @param limite nanosegundos hasta el siguiente evento programado (p. ej. un
+     *               reintento de subasta); la espera no lo rebasa
+     */
+    void ocioso(long limite) {
+        if (limite <= 0) {
+            return;
+        }
+        if (vacios < GIROS && limite == Long.MAX_VALUE) {
+            vacios++;
+            Thread.onSpinWait();
+            return;
+        }
+        LockSupport.parkNanos(this, Math.min(sondeo, limite));
+        sondeo = Math.min(sondeo * 2, SONDEO_MAX);
+    }
+
+    /** El protocolo proceso un evento: el siguiente sondeo vacio vuelve a girar. */
+    void activo() {
+        vacios = 0;
+        sondeo = SONDEO_MIN;
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Robo repartido entre varios donadores: pide a los procesos por encima de la carga
+ * media lo suficiente para llegar a ella, a lo mas la mitad de la cola de cada uno y
+ * a MAX_DONORS procesos. Prefiere donadores del mismo nodo y, despues, los de mayor
+ * excedente descontando su latencia y sus robos fallidos.
+ */
+public class MultiDonorStrategy implements LoadBalancingStrategy {
+    private static final int MAX_DONORS = 4;
+
+    /** Eleccion de un solo donador: la misma de la subasta. */
+    private final AuctionStrategy subasta = new AuctionStrategy();
+
+    @Override
+    public int selectDonor(int[] info, int myId) {
+        return subasta.selectDonor(info, myId);
+    }
+
+    @Override
+    public List<StealRequest> selectDonors(StealContext ctx) {
+        int[] info = ctx.getSizes();
+        int me = ctx.getMyId();
+        long total = ctx.getOwnSize();
+        for (int i = 0; i < info.length; i++) {
+            if (i != me) total += Math.max(info[i], 0);
+        }
+        int avg = (int) Math.ceil(total / (double) info.length);
+        int need = avg - ctx.getOwnSize();
+
+        List<Integer> candidatos = new ArrayList<>();
+        for (int i = 0; i < info.length; i++) {
+            if (i != me && info[i] > avg) candidatos.add(i);
+        }
+        if (candidatos.isEmpty() || need <= 0) {
+            return LoadBalancingStrategy.super.selectDonors(ctx);
+        }
+        candidatos.sort((a, b) -> Double.compare(score(ctx, b, avg), score(ctx, a, avg)));
+
+        List<StealRequest> robos = new ArrayList<>();
+        for (int d : candidatos) {
+            if (need <= 0 || robos.size() == MAX_DONORS) break;
+            int k = Math.min(Math.min(info[d] - avg, info[d] / 2), need);
+            if (k <= 0) continue;
+            robos.add(new StealRequest(d, k));
+            need -= k;
+        }
+        return robos.isEmpty() ? LoadBalancingStrategy.super.selectDonors(ctx) : robos;
+    }
+
+    /** Mayor es mejor: excedente, con bonificacion por mismo nodo y castigo por latencia y fallos. */
+    private static double score(StealContext ctx, int d, int avg) {
+        double s = ctx.getSizes()[d] - avg;
+        if (ctx.sameNode(d)) s *= 2;
+        double lat = ctx.getLatencyNs(d);
+        if (lat > 0) s /= 1 + lat / 1e6;
+        return s / (1 + ctx.getFailures(d));
+    }
+}
@@ -0,0 +1,130 @@
+// NodeShared.java
+import mpi.Datatype;
+import mpi.Intracomm;
+import mpi.MPI;
+import mpi.MPIException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Difusion de datos de solo lectura con una copia por nodo (DLML.Bcast).
+ *
+ * Los procesos se agrupan por nodo de memoria compartida (splitType con
+ * COMM_TYPE_SHARED). El proceso de menor rank de cada nodo (lider) crea un archivo
+ * en -Dodlml.shm.dir (/dev/shm si existe, si no java.io.tmpdir), lo mapea en
+ * memoria y recibe ahi los datos con un bcast entre lideres, sin copias
+ * intermedias. Los demas procesos del nodo mapean el mismo archivo en solo
+ * lectura, asi que el nodo guarda una sola copia sin importar cuantos procesos
+ * tenga. Cuando todos lo mapearon, el lider borra el archivo: el mapeo sigue
+ * vigente y no quedan archivos si el trabajo termina mal despues.
+ *
+ * Los datos viajan en orden nativo con el tipo MPI de sus elementos. Cada difusion
+ * admite hasta 2 GB (limite de un MappedByteBuffer).
+ */
+final class NodeShared {
+
+    private static final String DIR = System.getProperty("odlml.shm.dir",
+            Files.isDirectory(Paths.get("/dev/shm")) ? "/dev/shm" : System.getProperty("java.io.tmpdir"));
+
+    /** Bytes por llamada a bcast (la cuenta de MPI es un int). */
+    private static final int TROZO = 1 << 30;
+
+    private final Intracomm comm;
+    private final Intracomm nodo;
+    private final Intracomm lideres;
+    private final boolean lider;
+    private int secuencia = 0;
+
+    /**
+     * Agrupa los procesos por nodo. Operacion colectiva sobre 'comm'.
+     *
+     * @param comm comunicador
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    NodeShared(Intracomm comm) throws MPIException {
+        this.comm = comm;
+        int id = comm.getRank();
+        this.nodo = comm.splitType(MPI.COMM_TYPE_SHARED, id, MPI.INFO_NULL);
+        this.lider = nodo.getRank() == 0;
+        // El raiz (rank 0) es lider de su nodo y rank 0 entre los lideres
+        this.lideres = comm.split(lider ? 0 : 1, id);
+    }
+
+    /**
+     * Difunde un bloque de datos desde el raiz. Operacion colectiva.
+     *
+     * @param bytes  tamaño del bloque (solo se usa en el raiz)
+     * @param tipo   tipo MPI de los elementos
+     * @param unidad bytes por elemento
+     * @param llenar escribe los datos en el buffer mapeado (solo se llama en el raiz)
+     * @return buffer de solo lectura en orden nativo con el bloque en [0, bytes)
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si falla la creacion o el mapeo del archivo compartido
+     */
+    ByteBuffer difundir(long bytes, Datatype tipo, int unidad, Consumer<ByteBuffer> llenar)
+        throws MPIException, IOException {
+
+        // {bytes, identificador}: el identificador distingue trabajos en el mismo nodo
+        long[] cab = new long[2];
+        if (comm.getRank() == DLML.ROOT) {
+            cab[0] = bytes;
+            cab[1] = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+        }
+        comm.bcast(cab, 2, MPI.LONG, DLML.ROOT);
+        if (cab[0] > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bcast admite hasta 2 GB por difusion: " + cab[0] + " bytes");
+        }
+        int n = (int) cab[0];
+        Path archivo = Paths.get(DIR, "odlml-" + Long.toHexString(cab[1]) + "-" + (secuencia++));
+
+        MappedByteBuffer mapa;
+        if (lider) {
+            try (RandomAccessFile f = new RandomAccessFile(archivo.toFile(), "rw")) {
+                f.setLength(n);
+                mapa = f.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, n);
+            }
+            mapa.order(ByteOrder.nativeOrder());
+            if (comm.getRank() == DLML.ROOT && n > 0) {
+                llenar.accept(mapa.duplicate().order(ByteOrder.nativeOrder()));
+            }
+            for (int off = 0; off < n; off += TROZO) {
+                int len = Math.min(TROZO, n - off);
+                lideres.bcast(mapa.slice(off, len), len / unidad, tipo, 0);
+            }
+        } else {
+            mapa = null;
+        }
+
+        nodo.barrier();   // el archivo ya tiene los datos
+        if (!lider) {
+            try (FileChannel ch = FileChannel.open(archivo)) {
+                mapa = ch.map(FileChannel.MapMode.READ_ONLY, 0, n);
+            }
+        }
+        nodo.barrier();   // todos lo mapearon
+        if (lider) {
+            Files.deleteIfExists(archivo);
+        }
+        return mapa.asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Libera los comunicadores de nodo y de lideres. Colectiva.
+     *
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    void free() throws MPIException {
+        nodo.free();
+        lideres.free();
+    }
+}
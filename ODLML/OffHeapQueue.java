@@ -0,0 +1,170 @@
+// OffHeapQueue.java
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+/**
+ * Cola de elementos codificados en un anillo de bytes fuera del heap.
+ *
+ * Cada elemento ocupa un registro [longitud:int][JSON] en un ByteBuffer directo que
+ * funciona como anillo de dos extremos: addFirst escribe antes de la cabeza y los
+ * lotes recibidos se escriben despues de la cola. Los elementos se decodifican solo
+ * al extraerlos con removeFirst; al donar, los registros se envian tal cual (sin
+ * recodificar), normalmente como una vista del propio anillo.
+ *
+ * El heap solo guarda el anillo y dos buffers auxiliares, sin importar cuantos
+ * elementos haya. El anillo crece por duplicacion cuando se llena.
+ */
+final class OffHeapQueue implements WorkQueue {
+
+    private ByteBuffer anillo;
+    private int cabeza;   // posicion del primer registro
+    private int usados;   // bytes ocupados a partir de la cabeza
+    private int n;        // numero de registros
+
+    /** Buffer auxiliar del hilo de trabajo (codificar en addFirst, decodificar en removeFirst). */
+    private final SerialBuffer local = new SerialBuffer(256);
+    /** Buffer auxiliar del protocolo (lotes que cruzan el final del anillo). */
+    private final SerialBuffer lote = new SerialBuffer(4096);
+    private int reservados;
+    private boolean reservaEnLote;
+
+    private final Class<? extends DataLike> cls;
+
+    /**
+     * @param capacidad capacidad inicial del anillo en bytes
+     * @param cls       clase de los elementos (para decodificar en removeFirst)
+     */
+    OffHeapQueue(int capacidad, Class<? extends DataLike> cls) {
+        anillo = ByteBuffer.allocateDirect(Math.max(capacidad, 1024));
+        this.cls = cls;
+    }
+
+    @Override
+    public void addFirst(DataLike item) {
+        local.clear();
+        int rec;
+        try {
+            rec = ItemCodec.encode(item, local);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ensure(usados + rec);
+        cabeza = Math.floorMod(cabeza - rec, anillo.capacity());
+        escribir(cabeza, local.flip(), rec);
+        usados += rec;
+        n++;
+    }
+
+    @Override
+    public DataLike removeFirst() {
+        if (n == 0) {
+            throw new NoSuchElementException();
+        }
+        int len = leerInt(cabeza);
+        leer(avanzar(cabeza, 4), local.reserve(len), len);
+        avanzarCabeza(4 + len, 1);
+        try {
+            return ItemCodec.decode(local, 0, len, cls);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public ByteBuffer takeBatch(int c) {
+        int span = 0;
+        for (int i = 0; i < c; i++) {
+            span += 4 + leerInt(avanzar(cabeza, span));
+        }
+        ByteBuffer out;
+        if (cabeza + span <= anillo.capacity()) {
+            // Caso normal: el lote es contiguo y se envia directamente desde el anillo
+            out = anillo.slice(cabeza, span);
+        } else {
+            out = lote.reserve(span);
+            leer(cabeza, out, span);
+            out.limit(span);
+        }
+        avanzarCabeza(span, c);
+        return out;
+    }
+
+    @Override
+    public ByteBuffer reserveBatch(int bytes) {
+        ensure(usados + bytes);
+        reservados = bytes;
+        int cola = avanzar(cabeza, usados);
+        reservaEnLote = cola + bytes > anillo.capacity();
+        return reservaEnLote ? lote.reserve(bytes) : anillo.slice(cola, bytes);
+    }
+
+    @Override
+    public void commitBatch(int c) {
+        if (reservaEnLote) {
+            escribir(avanzar(cabeza, usados), lote.buffer(), reservados);
+        }
+        usados += reservados;
+        n += c;
+        reservados = 0;
+    }
+
+    private int avanzar(int pos, int k) {
+        return (pos + k) % anillo.capacity();
+    }
+
+    private void avanzarCabeza(int bytes, int registros) {
+        usados -= bytes;
+        n -= registros;
+        cabeza = (n == 0) ? 0 : avanzar(cabeza, bytes);
+    }
+
+    /** Crece el anillo (linealizando su contenido) hasta tener 'necesarios' bytes. */
+    private void ensure(int necesarios) {
+        int cap = anillo.capacity();
+        if (necesarios <= cap) {
+            return;
+        }
+        while (cap < necesarios) cap <<= 1;
+        ByteBuffer nuevo = ByteBuffer.allocateDirect(cap);
+        leer(cabeza, nuevo, usados);
+        anillo = nuevo;
+        cabeza = 0;
+    }
+
+    /** Copia 'len' bytes de src[0..len) al anillo a partir de 'pos', dando la vuelta si hace falta. */
+    private void escribir(int pos, ByteBuffer src, int len) {
+        int primero = Math.min(len, anillo.capacity() - pos);
+        anillo.put(pos, src, 0, primero);
+        if (primero < len) {
+            anillo.put(0, src, primero, len - primero);
+        }
+    }
+
+    /** Copia 'len' bytes del anillo desde 'pos' a dst[0..len), dando la vuelta si hace falta. */
+    private void leer(int pos, ByteBuffer dst, int len) {
+        int primero = Math.min(len, anillo.capacity() - pos);
+        dst.put(0, anillo, pos, primero);
+        if (primero < len) {
+            dst.put(primero, anillo, 0, len - primero);
+        }
+    }
+
+    /** Lee la longitud (big-endian) de un registro que puede cruzar el final del anillo. */
+    private int leerInt(int pos) {
+        if (pos + 4 <= anillo.capacity()) {
+            return anillo.getInt(pos);
+        }
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            v = (v << 8) | (anillo.get(avanzar(pos, i)) & 0xff);
+        }
+        return v;
+    }
+}
@@ -1,7 +1,11 @@
 import mpi.*;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.LinkedList;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
 
 /**
  * Hilo de protocolo DLML que coordina el intercambio de datos entre procesos MPI.
@@ -10,6 +14,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  *  - Atiende mensajes entrantes (LISTA_VACIA, PETICION_TAM_LISTA, DAME_DATOS, etc.).
  *  - Gestiona subastas para solicitar datos a otros procesos cuando la lista local está vacía.
  *  - Distribuye datos a solicitantes remotos y actualiza banderas/sincronización en DLML.
+ *  - Es un hilo persistente: atiende todas las fases del contexto, distinguidas por época.
  *
  * Notas:
  *  - La lógica y las etiquetas de mensaje se mantienen fieles al código original.
@@ -19,245 +24,477 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class Protocol<T extends DataLike> extends Thread {
 
-    private final LoadBalancingStrategy strategy = DLML.getStrategy();
+    /** Contexto DLML al que sirve este hilo (cola, banderas, semaforos, comunicador). */
+    private final DLMLContext ctx;
 
-    /** Clase de datos tipada tomada de la configuración global de DLML. */
-    @SuppressWarnings("unchecked")
-    private final Class<T> dataClass = (Class<T>) DLML.getDataClass();
+    /** Encabezado de un lote: {bytes enviados, bytes originales o 0} (ver {@link Compression}). */
+    private final int[] tam = new int[2];
 
-    /** Mapper JSON estático y reutilizable para serialización/deserialización. */
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** Compresion de lotes donados y buffer para recibir los comprimidos. */
+    private final Compression compresion = new Compression();
+    private final SerialBuffer comprimido = new SerialBuffer(4096);
+
+    /** Buffer de envio de mensajes de control: {valor, epoca}. */
+    private final int[] out = new int[2];
+
+    /** Fase en curso; solo la modifica este hilo (ver {@link DLMLContext#epoch}). */
+    private int epoca = 0;
+
+    /** Estado de la fase en curso (subasta, peticiones pendientes y cierre). */
+    private final int[] info;
+    private final LinkedList<Integer> requests = new LinkedList<>();
+    private final LinkedList<Integer> ptl = new LinkedList<>();
+    private int finalizeCounter;
+    private int requestAnswers;
+    private boolean fsubasta;
+    private boolean ffinalize;
+    private int csubastas;
+
+    /** Robos en curso: inicio (ns) por donador (0 si no hay), respuestas pendientes. */
+    private final long[] inicioRobo;
+    private int esperando;
+    private boolean recibioDatos;
 
     /**
-     * Bucle principal del protocolo. Recibe y procesa mensajes MPI
-     * hasta completar la finalización acordada entre procesos.
+     * Subasta a repetir (antes un LISTA_VACIA enviado a si mismo) y el instante
+     * (System.nanoTime) a partir del cual se repite, segun {@link Backoff}.
      */
-    @Override
-    public void run() {
-        int c, r;
-        int[] m = new int[1];
-        int[] dSize = new int[1];
-        int[] tam = new int[1];
-        byte[] dd = null;
-        int[] info = new int[DLML.total];
+    private boolean reintentar;
+    private long reintentarEn;
+    private final Backoff espera;
 
-        int max = 0;
-        int maxid = 0;
+    /** Cantidad pedida por cada ladron en su DAME_DATOS (0: a criterio del donador). */
+    private final int[] pedido;
 
-        LinkedList<Integer> requests = new LinkedList<>();
-        LinkedList<Integer> ptl = new LinkedList<>();
+    /** Informacion para la estrategia: tamaños, topologia e historial de robos. */
+    private final StealContext steal;
 
-        Status status;
-        int idRemote;
-        int finalizeCounter = 0;
-        int requestAnswers = 0;
-        boolean fsubasta = false;
-        boolean ffinalize = false;
-        int csubastas = 0;
+    /** Destinos de las lecturas RMA, uno por proceso (MPI ignora la posicion del buffer). */
+    private final IntBuffer[] tamRemotos;
 
-        try {
-            while (finalizeCounter != DLML.total) {
+    /** Destino de los lotes de fases ya cerradas. */
+    private final SerialBuffer descarte = new SerialBuffer(1024);
 
-                status = MPI.COMM_WORLD.recv(m, 1, MPI.INT, MPI.ANY_SOURCE, MPI.ANY_TAG);
+    /**
+     * @param ctx contexto cuyo intercambio de datos coordina este hilo
+     */
+    Protocol(DLMLContext ctx) {
+        super("DLML-Protocol-" + ctx.id);
+        this.ctx = ctx;
+        this.info = new int[ctx.total];
+        this.inicioRobo = new long[ctx.total];
+        this.pedido = new int[ctx.total];
+        this.steal = new StealContext(ctx.id, ctx.nodos, info);
+        this.espera = new Backoff(ctx.id);
+        this.tamRemotos = new IntBuffer[ctx.total];
+        if (ctx.ventana != null) {
+            for (int i = 0; i < ctx.total; i++) {
+                tamRemotos[i] = MPI.newIntBuffer(1);
+            }
+        }
+    }
 
-                switch (status.getTag()) {
-                    case DLML.LISTA_VACIA:
-                        r = requests.size();
-                        for (int i = 0; i < r; i++) {
-                            idRemote = requests.remove();
-                            m[0] = 0;
-                            MPI.COMM_WORLD.send(m, 1, MPI.INT, idRemote, DLML.NO_HAY_DATOS);
-                        }
+    /**
+     * Dona a 'dest' 'c' elementos de la cola (los primeros, o los afines a su nodo)
+     * como un solo lote:
+     * TAM_BUFFER con los bytes del lote y DATOS_REMOTOS con los registros codificados
+     * (comprimidos si conviene). Con la cola fuera del heap los registros se envian
+     * sin recodificar; con la cola columnar el lote son columnas de enteros y viaja
+     * como MPI.INT.
+     */
+    private void enviarLote(int dest, int c) throws MPIException, IOException {
+        ByteBuffer lote = ctx.data.takeBatch(c, ctx.nodos[dest], ctx.nodos[ctx.id]);
+        ctx.publicarTam();
+        ctx.stats.donated(c);
+        ByteBuffer z = compresion.comprimir(lote, tam);
+        ctx.pcomm.send(tam, 2, MPI.INT, dest, DLML.TAM_BUFFER);
+        if (z != null) {
+            ctx.pcomm.send(z, tam[0], MPI.BYTE, dest, DLML.DATOS_REMOTOS);
+        } else {
+            ctx.pcomm.send(lote, tam[0] / ctx.data.batchUnit(), ctx.data.batchType(), dest, DLML.DATOS_REMOTOS);
+        }
+    }
 
-                        if (DLML.flagInfo) {
-                            DLML.flagInfo = false;
-                            m[0] = 0;
-                            for (int auxptl : ptl) {
-                                MPI.COMM_WORLD.send(m, 1, MPI.INT, auxptl, DLML.INFORMACION_LISTA);
-                            }
-                            ptl.clear();
-                        }
+    /**
+     * Recibe de 'src' un lote de 'c' elementos en el espacio reservado por la cola
+     * (directamente, o descomprimiendolo ahi) y lo agrega al final.
+     */
+    private void recibirLote(int src, int c) throws MPIException, IOException {
+        ctx.pcomm.recv(tam, 2, MPI.INT, src, DLML.TAM_BUFFER);
+        if (tam[1] == 0) {
+            ByteBuffer bb = ctx.data.reserveBatch(tam[0]);
+            ctx.pcomm.recv(bb, tam[0] / ctx.data.batchUnit(), ctx.data.batchType(), src, DLML.DATOS_REMOTOS);
+        } else {
+            ByteBuffer z = comprimido.reserve(tam[0]);
+            ctx.pcomm.recv(z, tam[0], MPI.BYTE, src, DLML.DATOS_REMOTOS);
+            compresion.descomprimir(z, tam[0], ctx.data.reserveBatch(tam[1]), tam[1]);
+        }
+        ctx.data.commitBatch(c);
+        ctx.publicarTam();
+    }
 
-                        fsubasta = true;
-                        // Protocolo de subasta: pedir tamaños de listas a todos los demás
-                        for (int i = 0; i < DLML.total; i++) {
-                            if (i != DLML.id) {
-                                MPI.COMM_WORLD.send(m, 1, MPI.INT, i, DLML.PETICION_TAM_LISTA);
-                            }
-                        }
-                        break;
+    /**
+     * Envia a 'dest' un mensaje de control {valor, epoca actual}.
+     */
+    private void enviar(int valor, int dest, int tag) throws MPIException {
+        out[0] = valor;
+        out[1] = epoca;
+        ctx.pcomm.send(out, 2, MPI.INT, dest, tag);
+    }
 
-                    case DLML.PETICION_TAM_LISTA:
-                        if (!ffinalize) {
-                            if (!fsubasta) {
-                                DLML.flagInfo = true;
-                                ptl.add(status.getSource());
-                            } else {
-                                m[0] = 0;
-                                MPI.COMM_WORLD.send(m, 1, MPI.INT, status.getSource(), DLML.INFORMACION_LISTA);
-                            }
-                        } else {
-                            m[0] = 0;
-                            MPI.COMM_WORLD.send(m, 1, MPI.INT, status.getSource(), DLML.INFORMACION_LISTA);
-                        }
-                        break;
+    /**
+     * Recibe y descarta un lote donado en una fase ya cerrada, para no dejar
+     * TAM_BUFFER/DATOS_REMOTOS huerfanos en el comunicador.
+     */
+    private void descartarLote(int src) throws MPIException {
+        ctx.pcomm.recv(tam, 2, MPI.INT, src, DLML.TAM_BUFFER);
+        if (tam[1] == 0) {
+            ctx.pcomm.recv(descarte.reserve(tam[0]), tam[0] / ctx.data.batchUnit(), ctx.data.batchType(),
+                           src, DLML.DATOS_REMOTOS);
+        } else {
+            ctx.pcomm.recv(descarte.reserve(tam[0]), tam[0], MPI.BYTE, src, DLML.DATOS_REMOTOS);
+        }
+    }
 
-                    case DLML.TAM_LISTA:
-                        DLML.flagInfo = false;
-                        m[0] = DLML.data.size();
-                        for (int auxptl : ptl) {
-                            MPI.COMM_WORLD.send(m, 1, MPI.INT, auxptl, DLML.INFORMACION_LISTA);
-                        }
-                        ptl.clear();
-                        DLML.mutex.release();
-                        break;
+    /**
+     * Lee de la ventana RMA el tamaño de cola publicado por cada proceso, sin
+     * intervencion de sus hilos (acceso pasivo con lockAll/get/unlockAll).
+     */
+    private void leerTamanos() throws MPIException {
+        ctx.ventana.lockAll(MPI.MODE_NOCHECK);
+        for (int i = 0; i < ctx.total; i++) {
+            if (i != ctx.id) {
+                ctx.ventana.get(tamRemotos[i], 1, MPI.INT, i, 0, 1, MPI.INT);
+            }
+        }
+        ctx.ventana.unlockAll();
+        for (int i = 0; i < ctx.total; i++) {
+            info[i] = (i != ctx.id) ? tamRemotos[i].get(0) : 0;
+        }
+    }
+
+    /**
+     * Decide la subasta con los tamaños de lista de los demas procesos (en 'info'):
+     * pide datos al donador elegido, reintenta, o cierra la fase localmente.
+     */
+    private void resolverSubasta() throws MPIException {
+        steal.ownSize = ctx.data.size();
+        steal.attempt = csubastas;
+        List<StealRequest> robos = ctx.strategy.selectDonors(steal);
+
+        System.out.println("DONOR: " + (robos.isEmpty() ? -1 : robos.get(0).getDonor()) + "SUBASTAS: " + csubastas);
+
+        // Robos concurrentes: una peticion DAME_DATOS por donador
+        recibioDatos = false;
+        for (StealRequest robo : robos) {
+            int d = robo.getDonor();
+            if (d >= 0 && d < ctx.total && d != ctx.id && inicioRobo[d] == 0) {
+                inicioRobo[d] = System.nanoTime();
+                enviar(robo.getAmount(), d, DLML.DAME_DATOS);
+                esperando++;
+            }
+        }
+
+        if (esperando > 0) {
+            csubastas = 0;
+        } else {
+            // No hay datos en otros procesos: reintentar subasta unas veces,
+            // luego finalizar protocolo localmente y notificar a otros.
+            if (csubastas < 2) {
+                System.out.println("ctx.id "+ctx.id+ " csubastas "+csubastas);
+                programarReintento();
+                csubastas++;
+            } else {
+                System.out.println("ctx.id "+ctx.id+ " FINALIZANDO.....");
+                ctx.canal.liberar();
+
+                for (int i = 0; i < ctx.total; i++) {
+                    if (i != ctx.id) {
+                        enviar(0, i, DLML.FINALIZE);
+                    }
+                }
+                finalizeCounter++;
 
-                    case DLML.INFORMACION_LISTA:
-                        info[status.getSource()] = m[0];
-                        requestAnswers++;
+                int r = requests.size();
+                for (int i = 0; i < r; i++) {
+                    int idRemote = requests.remove();
+                    enviar(0, idRemote, DLML.NO_HAY_DATOS);
+                }
+                ctx.canal.limpiar(LocalChannel.PETICIONES);
+
+                ctx.canal.limpiar(LocalChannel.INFO);
+                for (int auxptl : ptl) {
+                    enviar(0, auxptl, DLML.INFORMACION_LISTA);
+                }
+                ptl.clear();
+            }
+        }
+    }
 
-                        if (requestAnswers == (DLML.total - 1)) {
-                            requestAnswers = 0;
+    /**
+     * Registra la respuesta de un donador. Cuando respondieron todos, libera al
+     * trabajador si llegaron datos o inicia otra subasta si no.
+     */
+    private void respuestaRobo(int donor, boolean conDatos, int items) throws MPIException {
+        if (inicioRobo[donor] == 0) {
+            return;
+        }
+        steal.record(donor, System.nanoTime() - inicioRobo[donor], conDatos);
+        if (conDatos) {
+            ctx.stats.steal(items);
+        } else {
+            ctx.stats.failedSteal();
+        }
+        inicioRobo[donor] = 0;
+        recibioDatos |= conDatos;
+        if (--esperando > 0) {
+            return;
+        }
+        if (recibioDatos) {
+            fsubasta = false;
+            espera.reset();
+            ctx.canal.liberar();
+        } else {
+            // Sigue en subasta (la cola esta vacia): las peticiones de tamaño se
+            // contestan de inmediato mientras dura la espera
+            programarReintento();
+        }
+    }
 
+    /**
+     * Programa la siguiente subasta tras la espera del {@link Backoff}. Mientras
+     * tanto el hilo sigue atendiendo mensajes y se estaciona en vez de girar.
+     */
+    private void programarReintento() {
+        reintentar = true;
+        reintentarEn = System.nanoTime() + espera.next();
+    }
 
-                            int donor = strategy.selectDonor(info, DLML.id);
+    /**
+     * Bucle principal del protocolo. El hilo vive mientras viva el contexto: cada
+     * iteracion externa es una fase (de la primera llamada a Get hasta que Get
+     * devuelve null) y termina cuando todos los procesos enviaron FINALIZE.
+     *
+     * Cada mensaje de control lleva {valor, epoca}. Los de una epoca anterior son
+     * restos de una fase cerrada y se descartan; los de la siguiente (un proceso
+     * que ya empezo la nueva fase) se difieren hasta cerrar la actual. Por eso no
+     * hace falta una barrera entre fases.
+     *
+     * Los avisos del trabajador propio llegan por {@link LocalChannel}, no por MPI,
+     * asi que el hilo alterna entre el buzon y un sondeo (iProbe) del comunicador,
+     * y se estaciona cuando ninguno tiene nada. El hilo termina con el aviso
+     * TERMINAR.
+     */
+    @Override
+    public void run() {
+        int c, r, valor;
+        int[] msg = new int[2];
 
+        ArrayDeque<int[]> diferidos = new ArrayDeque<>();
+        ArrayDeque<int[]> pendientes = new ArrayDeque<>();
 
-			    System.out.println("DONOR: "+donor + "SUBASTAS: "+csubastas);
-                            //max = 0;
-                            //for (int i = 0; i < DLML.total; i++) {
-                            //    if (i != DLML.id && info[i] > max) {
-                            //        max = info[i];
-                            //        maxid = i;
-                            //    }
-                            //}
+        Status status;
+        int fuente, tag;
+        int idRemote;
 
-                            if (donor > 0) {
-                                MPI.COMM_WORLD.send(m, 1, MPI.INT, donor, DLML.DAME_DATOS);
-                                csubastas = 0;
-                            } else {
-                                // No hay datos en otros procesos: reintentar subasta unas veces,
-                                // luego finalizar protocolo localmente y notificar a otros.
-                                if (csubastas < 2) {
-                                    System.out.println("DLML.id "+DLML.id+ " csubastas "+csubastas);
-                                    MPI.COMM_WORLD.send(m, 1, MPI.INT, DLML.id, DLML.LISTA_VACIA);
-                                    csubastas++;
-                                } else {
-                                    System.out.println("DLML.id "+DLML.id+ " FINALIZANDO.....");
-                                    m[0] = 0;
-                                    DLML.mutex.release();
-
-                                    for (int i = 0; i < DLML.total; i++) {
-                                        if (i != DLML.id) {
-                                            MPI.COMM_WORLD.send(m, 1, MPI.INT, i, DLML.FINALIZE);
-                                        }
-                                    }
-                                    finalizeCounter++;
-
-                                    r = requests.size();
-                                    for (int i = 0; i < r; i++) {
-                                        idRemote = requests.remove();
-                                        m[0] = 0;
-                                        MPI.COMM_WORLD.send(m, 1, MPI.INT, idRemote, DLML.NO_HAY_DATOS);
-                                    }
-
-                                    m[0] = 0;
-                                    for (int auxptl : ptl) {
-                                        MPI.COMM_WORLD.send(m, 1, MPI.INT, auxptl, DLML.INFORMACION_LISTA);
-                                    }
-                                }
+        try {
+            while (true) {
+                finalizeCounter = 0;
+                requestAnswers = 0;
+                fsubasta = false;
+                ffinalize = false;
+                csubastas = 0;
+                esperando = 0;
+                reintentar = false;
+                espera.reset();
+                Arrays.fill(inicioRobo, 0);
+                requests.clear();
+                ptl.clear();
+
+                // Mensajes de esta fase que llegaron antes de cerrar la anterior
+                pendientes.addAll(diferidos);
+                diferidos.clear();
+
+                while (finalizeCounter != ctx.total) {
+
+                    int aviso;
+                    if (!pendientes.isEmpty()) {
+                        int[] d = pendientes.poll();
+                        fuente = d[0];
+                        tag = d[1];
+                        valor = d[2];
+                    } else if ((aviso = ctx.canal.tomarAviso()) != 0) {
+                        if (aviso == DLML.TERMINAR) {
+                            return;
+                        }
+                        fuente = ctx.id;
+                        tag = aviso;
+                        valor = 0;
+                    } else if ((status = ctx.pcomm.iProbe(MPI.ANY_SOURCE, MPI.ANY_TAG)) != null) {
+                        fuente = status.getSource();
+                        tag = status.getTag();
+                        ctx.pcomm.recv(msg, 2, MPI.INT, fuente, tag);
+                        valor = msg[0];
+
+                        if (msg[1] < epoca) {
+                            if (tag == DLML.DATOS_REMOTOS && valor > 0) {
+                                descartarLote(fuente);
                             }
-                            //for (int i = 0; i < info.length; i++) info[i] = 0;
+                            continue;
                         }
-                        break;
-
-                    case DLML.DATOS_REMOTOS:
-                        int idAux = status.getSource();
-                        fsubasta = false;
-
-                        for (int i = 0; i < m[0]; i++) {
-                            MPI.COMM_WORLD.recv(dSize, 1, MPI.INT, idAux, DLML.TAM_BUFFER);
-                            dd = new byte[dSize[0]];
-                            MPI.COMM_WORLD.recv(dd, dSize[0], MPI.BYTE, idAux, DLML.DATOS_REMOTOS);
-                            T data = MAPPER.readValue(dd, dataClass);
-                            DLML.data.add(data);
+                        if (msg[1] > epoca) {
+                            diferidos.add(new int[] {fuente, tag, valor});
+                            continue;
                         }
-                        m[0] = 1;
-                        DLML.mutex.release();
-                        break;
-
-                    case DLML.LISTA_DE_DATOS:
-                        if (DLML.data.size() >= (requests.size() + 1)) {
-                            // Más datos que peticiones: repartir en lotes equilibrados
-                            c = DLML.data.size() / (requests.size() + 1);
+                    } else if (reintentar && System.nanoTime() - reintentarEn >= 0) {
+                        reintentar = false;
+                        fuente = ctx.id;
+                        tag = DLML.LISTA_VACIA;
+                        valor = 0;
+                    } else {
+                        ctx.canal.ocioso(reintentar ? reintentarEn - System.nanoTime() : Long.MAX_VALUE);
+                        continue;
+                    }
+                    ctx.canal.activo();
+
+                    switch (tag) {
+                        case DLML.LISTA_VACIA:
                             r = requests.size();
                             for (int i = 0; i < r; i++) {
                                 idRemote = requests.remove();
-                                m[0] = c;
-                                MPI.COMM_WORLD.send(m, 1, MPI.INT, idRemote, DLML.DATOS_REMOTOS);
-                                for (int j = 0; j < c; j++) {
-                                    @SuppressWarnings("unchecked")
-                                    T aux = (T) DLML.data.removeFirst();
-                                    dd = MAPPER.writeValueAsBytes(aux);
-                                    tam[0] = dd.length;
-                                    MPI.COMM_WORLD.send(tam, 1, MPI.INT, idRemote, DLML.TAM_BUFFER);
-                                    MPI.COMM_WORLD.send(dd, dd.length, MPI.BYTE, idRemote, DLML.DATOS_REMOTOS);
+                                enviar(0, idRemote, DLML.NO_HAY_DATOS);
+                            }
+                            ctx.canal.limpiar(LocalChannel.PETICIONES);
+
+                            if (ctx.canal.hay(LocalChannel.INFO)) {
+                                ctx.canal.limpiar(LocalChannel.INFO);
+                                for (int auxptl : ptl) {
+                                    enviar(0, auxptl, DLML.INFORMACION_LISTA);
                                 }
+                                ptl.clear();
                             }
-                            DLML.flag = false;
-                            DLML.mutex.release();
 
-                        } else {
-                            // Menos datos que peticiones: enviar 1 a tantos como sea posible
-                            r = DLML.data.size();
-                            for (int i = 0; i < (r - 1); i++) {
-                                idRemote = requests.remove();
-                                m[0] = 1;
-                                MPI.COMM_WORLD.send(m, 1, MPI.INT, idRemote, DLML.DATOS_REMOTOS);
-                                @SuppressWarnings("unchecked")
-                                T aux = (T) DLML.data.removeFirst();
-                                dd = MAPPER.writeValueAsBytes(aux);
-                                tam[0] = dd.length;
-                                MPI.COMM_WORLD.send(tam, 1, MPI.INT, idRemote, DLML.TAM_BUFFER);
-                                MPI.COMM_WORLD.send(dd, dd.length, MPI.BYTE, idRemote, DLML.DATOS_REMOTOS);
+                            fsubasta = true;
+                            if (ctx.total == 1) {
+                                // Sin otros procesos no hay a quien preguntar: la subasta
+                                // falla sola y la fase se cierra localmente
+                                resolverSubasta();
+                                break;
                             }
-                            r = requests.size();
-                            for (int i = 0; i < r; i++) {
-                                idRemote = requests.remove();
-                                m[0] = 0;
-                                MPI.COMM_WORLD.send(m, 1, MPI.INT, idRemote, DLML.NO_HAY_DATOS);
+                            if (ctx.ventana != null) {
+                                // Tamaños publicados en la ventana RMA: sin mensajes a las victimas
+                                leerTamanos();
+                                resolverSubasta();
+                                break;
                             }
-                            DLML.flag = false;
-                            DLML.mutex.release();
-                        }
-                        break;
-
-                    case DLML.DAME_DATOS:
-                        if (!ffinalize) {
-                            DLML.flag = true;
-                            requests.add(status.getSource());
-                        } else {
-                            MPI.COMM_WORLD.send(m, 1, MPI.INT, status.getSource(), DLML.NO_HAY_DATOS);
-                        }
-                        break;
+                            // Protocolo de subasta: pedir tamaños de listas a todos los demás
+                            for (int i = 0; i < ctx.total; i++) {
+                                if (i != ctx.id) {
+                                    enviar(0, i, DLML.PETICION_TAM_LISTA);
+                                }
+                            }
+                            break;
+
+                        case DLML.PETICION_TAM_LISTA:
+                            if (!ffinalize) {
+                                if (!fsubasta) {
+                                    ptl.add(fuente);
+                                    ctx.canal.marcar(LocalChannel.INFO);
+                                } else {
+                                    enviar(0, fuente, DLML.INFORMACION_LISTA);
+                                }
+                            } else {
+                                enviar(0, fuente, DLML.INFORMACION_LISTA);
+                            }
+                            break;
+
+                        case DLML.TAM_LISTA:
+                            ctx.canal.limpiar(LocalChannel.INFO);
+                            for (int auxptl : ptl) {
+                                enviar(ctx.data.size(), auxptl, DLML.INFORMACION_LISTA);
+                            }
+                            ptl.clear();
+                            ctx.canal.liberar();
+                            break;
+
+                        case DLML.INFORMACION_LISTA:
+                            info[fuente] = valor;
+                            requestAnswers++;
+
+                            if (requestAnswers == (ctx.total - 1)) {
+                                requestAnswers = 0;
+                                resolverSubasta();
+                            }
+                            break;
+
+                        case DLML.DATOS_REMOTOS:
+                            recibirLote(fuente, valor);
+                            respuestaRobo(fuente, valor > 0, valor);
+                            break;
+
+                        case DLML.LISTA_DE_DATOS:
+                            if (ctx.data.size() >= (requests.size() + 1)) {
+                                // Más datos que peticiones: repartir en lotes equilibrados
+                                c = ctx.data.size() / (requests.size() + 1);
+                                r = requests.size();
+                                for (int i = 0; i < r; i++) {
+                                    idRemote = requests.remove();
+                                    // Un robo con cantidad pedida no recibe mas que eso
+                                    int ci = (pedido[idRemote] > 0) ? Math.min(pedido[idRemote], c) : c;
+                                    enviar(ci, idRemote, DLML.DATOS_REMOTOS);
+                                    enviarLote(idRemote, ci);
+                                }
+                                ctx.canal.limpiar(LocalChannel.PETICIONES);
+                                ctx.canal.liberar();
+
+                            } else {
+                                // Menos datos que peticiones: enviar 1 a tantos como sea posible
+                                r = ctx.data.size();
+                                for (int i = 0; i < (r - 1); i++) {
+                                    idRemote = requests.remove();
+                                    enviar(1, idRemote, DLML.DATOS_REMOTOS);
+                                    enviarLote(idRemote, 1);
+                                }
+                                r = requests.size();
+                                for (int i = 0; i < r; i++) {
+                                    idRemote = requests.remove();
+                                    enviar(0, idRemote, DLML.NO_HAY_DATOS);
+                                }
+                                ctx.canal.limpiar(LocalChannel.PETICIONES);
+                                ctx.canal.liberar();
+                            }
+                            break;
+
+                        case DLML.DAME_DATOS:
+                            // En espera de reintento la cola esta vacia: se rechaza ya
+                            // en lugar de retener al ladron hasta la siguiente subasta
+                            if (!ffinalize && !reintentar) {
+                                pedido[fuente] = valor;
+                                requests.add(fuente);
+                                ctx.canal.marcar(LocalChannel.PETICIONES);
+                            } else {
+                                enviar(0, fuente, DLML.NO_HAY_DATOS);
+                            }
+                            break;
 
-                    case DLML.NO_HAY_DATOS:
-                        fsubasta = false;
-                        MPI.COMM_WORLD.send(m, 1, MPI.INT, DLML.id, DLML.LISTA_VACIA);
-                        break;
+                        case DLML.NO_HAY_DATOS:
+                            respuestaRobo(fuente, false, 0);
+                            break;
 
-                    case DLML.FINALIZE:
-                        finalizeCounter++;
-                        break;
+                        case DLML.FINALIZE:
+                            finalizeCounter++;
+                            break;
 
-                    default:
-                        System.out.println("MENSAJE NO RECONOCIDO: " + status.getTag()
-                                + " de " + status.getSource());
+                        default:
+                            System.out.println("MENSAJE NO RECONOCIDO: " + tag + " de " + fuente);
+                    }
                 }
-            }
 
-            MPI.COMM_WORLD.barrier();
-            DLML.mutexEnd.release();
+                // Fin de fase: el trabajador (bloqueado en Get) continua en la epoca siguiente
+                epoca++;
+                ctx.epoch = epoca;
+                ctx.canal.liberarFin();
+            }
 
         } catch (MPIException e) {
             System.err.println("Error MPI en Protocol.run(): " + e.getMessage());
@@ -0,0 +1,204 @@
+// ResultStream.java
+import mpi.Intracomm;
+import mpi.MPI;
+import mpi.MPIException;
+import mpi.Status;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Flujo de resultados hacia un proceso colector (Emit).
+ *
+ * En lugar de acumular resultados en cada proceso y enviarlos al final con
+ * Gather/Reduce, el hilo de trabajo llama a {@link #Emit}: los resultados se agrupan
+ * en lotes de -Dodlml.emit.batch elementos (1024 por omision) que un hilo emisor
+ * serializa y envia en segundo plano (comprimidos si conviene, ver
+ * {@link Compression}). En el colector, un hilo receptor aplica el combinador a
+ * cada resultado conforme llegan, de modo que la transferencia se solapa con el
+ * computo y al final solo queda vaciar el ultimo lote ({@link #Close}).
+ *
+ * El combinador solo se invoca desde el hilo receptor del colector; su estado es
+ * seguro de leer despues de {@link #Close}. Los mensajes usan un duplicado privado
+ * del comunicador.
+ *
+ * @param <R> tipo de los resultados (serializable con Jackson)
+ */
+final class ResultStream<R> {
+
+    private static final ObjectMapper MAPPER = ItemCodec.MAPPER;
+
+    /** Resultados por lote. */
+    static final int LOTE = Integer.getInteger("odlml.emit.batch", 1024);
+
+    /** Lotes en espera de envio; Emit se bloquea si el emisor va atrasado. */
+    private static final int EN_ESPERA = 8;
+
+    /** Lote vacio que indica al emisor que ya no hay mas resultados. */
+    private final List<R> fin = new ArrayList<>(0);
+
+    private final Intracomm scomm;
+    private final int collector;
+    private final JavaType tipoLote;
+    private final Consumer<R> combiner;
+
+    private List<R> actual = new ArrayList<>();
+    private final BlockingQueue<List<R>> pendientes = new ArrayBlockingQueue<>(EN_ESPERA);
+    private final Thread emisor;
+    private final Thread receptor;
+
+    /** Primer error de los hilos de fondo (se reporta en Close). */
+    private volatile Exception error = null;
+
+    /**
+     * Crea el flujo y arranca sus hilos. Operacion colectiva sobre 'comm'.
+     *
+     * @param comm      comunicador
+     * @param cls       clase de los resultados
+     * @param collector rank del colector
+     * @param combiner  combinador aplicado en el colector a cada resultado recibido
+     *                  (se ignora en los demas procesos)
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     */
+    ResultStream(Intracomm comm, Class<R> cls, int collector, Consumer<R> combiner) throws MPIException {
+        this.scomm = comm.dup();
+        this.collector = collector;
+        this.combiner = combiner;
+        this.tipoLote = MAPPER.getTypeFactory().constructCollectionType(ArrayList.class, cls);
+
+        int id = scomm.getRank();
+        emisor = new Thread(this::enviar, "DLML-Emit-" + id);
+        emisor.start();
+        if (id == collector) {
+            int total = scomm.getSize();
+            receptor = new Thread(() -> recibir(total), "DLML-Collect-" + id);
+            receptor.start();
+        } else {
+            receptor = null;
+        }
+    }
+
+    /**
+     * Agrega un resultado al lote actual; el lote se envia al llenarse.
+     *
+     * @param result resultado
+     */
+    public void Emit(R result) {
+        actual.add(result);
+        if (actual.size() >= LOTE) {
+            encolar(actual);
+            actual = new ArrayList<>(LOTE);
+        }
+    }
+
+    /**
+     * Envia el ultimo lote, espera a que el colector haya combinado todos los
+     * resultados y libera el flujo. Operacion colectiva.
+     *
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si fallo la serializacion o el envio de algun lote
+     */
+    public void Close() throws MPIException, IOException {
+        if (!actual.isEmpty()) {
+            encolar(actual);
+            actual = new ArrayList<>();
+        }
+        encolar(fin);
+        try {
+            emisor.join();
+            if (receptor != null) {
+                receptor.join();
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        scomm.barrier();
+        scomm.free();
+        if (error != null) {
+            throw new IOException("Error en el flujo de resultados: " + error.getMessage(), error);
+        }
+    }
+
+    private void encolar(List<R> lote) {
+        try {
+            pendientes.put(lote);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Hilo emisor: serializa y envia cada lote; un tamaño -1 marca el final. */
+    private void enviar() {
+        Compression compresion = new Compression();
+        int[] tam = new int[2];
+        try {
+            while (true) {
+                List<R> lote = pendientes.take();
+                if (lote == fin) {
+                    tam[0] = -1;
+                    tam[1] = 0;
+                    scomm.send(tam, 2, MPI.INT, collector, DLML.TAM_BUFFER);
+                    return;
+                }
+                byte[] dd;
+                try {
+                    dd = MAPPER.writeValueAsBytes(lote);
+                } catch (IOException e) {
+                    // El lote se pierde, pero el emisor sigue para que el colector termine
+                    if (error == null) error = e;
+                    continue;
+                }
+                ByteBuffer z = compresion.comprimir(dd, tam);
+                scomm.send(tam, 2, MPI.INT, collector, DLML.TAM_BUFFER);
+                if (z != null) {
+                    scomm.send(z, tam[0], MPI.BYTE, collector, DLML.DATOS_REMOTOS);
+                } else {
+                    scomm.send(dd, dd.length, MPI.BYTE, collector, DLML.DATOS_REMOTOS);
+                }
+            }
+        } catch (MPIException | InterruptedException e) {
+            error = e;
+            System.err.println("Error en el emisor de resultados: " + e.getMessage());
+        }
+    }
+
+    /** Hilo receptor (solo en el colector): combina lotes hasta recibir el final de todos. */
+    private void recibir(int total) {
+        Compression compresion = new Compression();
+        int[] tam = new int[2];
+        int terminados = 0;
+        try {
+            while (terminados < total) {
+                Status st = scomm.recv(tam, 2, MPI.INT, MPI.ANY_SOURCE, DLML.TAM_BUFFER);
+                if (tam[0] < 0) {
+                    terminados++;
+                    continue;
+                }
+                byte[] dd = new byte[tam[0]];
+                scomm.recv(dd, tam[0], MPI.BYTE, st.getSource(), DLML.DATOS_REMOTOS);
+                try {
+                    if (tam[1] != 0) {
+                        dd = compresion.descomprimir(dd, tam[1]);
+                    }
+                    List<R> lote = MAPPER.readValue(dd, tipoLote);
+                    for (R r : lote) {
+                        combiner.accept(r);
+                    }
+                } catch (Exception e) {
+                    // Se sigue recibiendo para no bloquear a los emisores
+                    if (error == null) error = e;
+                }
+            }
+        } catch (MPIException e) {
+            error = e;
+            System.err.println("Error en el colector de resultados: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+// SerialBuffer.java
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Buffer directo reutilizable para serializar y recibir elementos por MPI.
+ *
+ * Crece por duplicacion y nunca se encoge, de modo que en estado estable no hay
+ * asignaciones por mensaje. Expone adaptadores OutputStream/InputStream para que
+ * Jackson escriba y lea directamente sobre el buffer. No es thread-safe: cada hilo
+ * debe usar su propia instancia.
+ */
+final class SerialBuffer {
+
+    private ByteBuffer buf;
+    private int lectura;
+    private int limiteLectura;
+
+    /** Adaptador de escritura: agrega al final del buffer, creciendo si hace falta. */
+    private final OutputStream out = new OutputStream() {
+        @Override
+        public void write(int b) {
+            ensure(buf.position() + 1);
+            buf.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(buf.position() + len);
+            buf.put(b, off, len);
+        }
+    };
+
+    /** Adaptador de lectura sobre el rango [0, limiteLectura). */
+    private final InputStream in = new InputStream() {
+        @Override
+        public int read() {
+            return (lectura < limiteLectura) ? (buf.get(lectura++) & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (lectura >= limiteLectura) return -1;
+            int n = Math.min(len, limiteLectura - lectura);
+            buf.get(lectura, b, off, n);
+            lectura += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limiteLectura - lectura;
+        }
+    };
+
+    /**
+     * @param capacidad capacidad inicial en bytes
+     */
+    SerialBuffer(int capacidad) {
+        buf = ByteBuffer.allocateDirect(Math.max(capacidad, 64));
+    }
+
+    /** Garantiza capacidad para 'n' bytes conservando el contenido escrito. */
+    private void ensure(int n) {
+        if (n > buf.capacity()) {
+            int cap = buf.capacity();
+            while (cap < n) cap <<= 1;
+            ByteBuffer nuevo = ByteBuffer.allocateDirect(cap);
+            buf.flip();
+            nuevo.put(buf);
+            buf = nuevo;
+        }
+    }
+
+    /** Descarta el contenido; la siguiente escritura empieza en la posicion 0. */
+    void clear() {
+        buf.clear();
+    }
+
+    /**
+     * Prepara una escritura desde el inicio del buffer.
+     *
+     * @return flujo que escribe sobre el buffer
+     */
+    OutputStream output() {
+        buf.clear();
+        return out;
+    }
+
+    /**
+     * Flujo que agrega al final del contenido actual, sin descartarlo.
+     *
+     * @return flujo que escribe sobre el buffer
+     */
+    OutputStream append() {
+        return out;
+    }
+
+    /**
+     * Agrega un entero (big-endian) al final del contenido.
+     *
+     * @param v valor
+     */
+    void writeInt(int v) {
+        ensure(buf.position() + 4);
+        buf.putInt(v);
+    }
+
+    /**
+     * Reserva 'n' enteros al final del contenido (como si se hubieran escrito) y
+     * devuelve una vista en orden nativo para llenarlos, p. ej. columnas que se
+     * envian con MPI.INT. La vista deja de ser valida si el buffer crece.
+     *
+     * @param n numero de enteros
+     * @return vista de los 'n' enteros reservados, con posicion 0
+     */
+    IntBuffer appendInts(int n) {
+        int pos = buf.position();
+        ensure(pos + n * Integer.BYTES);
+        buf.position(pos + n * Integer.BYTES);
+        return buf.slice(pos, n * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * Sobrescribe un entero en una posicion ya escrita.
+     *
+     * @param index posicion absoluta
+     * @param v     valor
+     */
+    void putInt(int index, int v) {
+        buf.putInt(index, v);
+    }
+
+    /**
+     * Lee un entero en una posicion absoluta.
+     *
+     * @param index posicion absoluta
+     * @return valor
+     */
+    int getInt(int index) {
+        return buf.getInt(index);
+    }
+
+    /**
+     * Deja el buffer listo para enviarse: posicion 0 y limite al final del contenido.
+     * Hay que llamar a {@link #clear()} u {@link #output()} antes de volver a escribir.
+     *
+     * @return buffer directo con el contenido en [0, size)
+     */
+    ByteBuffer flip() {
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Bytes escritos desde el ultimo {@link #output()}.
+     *
+     * @return longitud del contenido
+     */
+    int size() {
+        return buf.position();
+    }
+
+    /**
+     * Prepara el buffer para recibir 'n' bytes desde su inicio (p. ej. con recv).
+     *
+     * @param n bytes a recibir
+     * @return buffer directo con capacidad suficiente
+     */
+    ByteBuffer reserve(int n) {
+        buf.clear();
+        ensure(n);
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * Buffer directo subyacente (los datos empiezan en la posicion 0).
+     * Deja de ser valido si el buffer crece.
+     *
+     * @return buffer actual
+     */
+    ByteBuffer buffer() {
+        return buf;
+    }
+
+    /**
+     * Prepara la lectura de un rango del buffer.
+     *
+     * @param off posicion inicial
+     * @param n   bytes a leer
+     * @return flujo que lee el rango [off, off + n)
+     */
+    InputStream input(int off, int n) {
+        lectura = off;
+        limiteLectura = off + n;
+        return in;
+    }
+}
@@ -0,0 +1,57 @@
+// Sketch.java
+/**
+ * Resumen probabilistico (sketch) que se puede combinar entre procesos.
+ *
+ * Los sketches tienen tamaño fijo, independiente del volumen de datos, y una
+ * serializacion binaria compacta; {@link DLML#Reduce_Merge} los combina en el raiz.
+ *
+ * @param <S> tipo concreto del sketch
+ */
+public interface Sketch<S extends Sketch<S>> {
+
+    /**
+     * Combina en este sketch el contenido de otro con los mismos parametros.
+     *
+     * @param other sketch a combinar
+     * @throws IllegalArgumentException si los parametros no coinciden
+     */
+    void merge(S other);
+
+    /**
+     * Serializa el sketch en su forma binaria compacta.
+     *
+     * @return bytes del sketch
+     */
+    byte[] toBytes();
+
+    /**
+     * Hash de 64 bits (FNV-1a + mezcla final de MurmurHash3) usado por los sketches
+     * para claves de texto. Es estable entre procesos y ejecuciones.
+     *
+     * @param s clave
+     * @return hash de 64 bits
+     */
+    static long hash64(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * Mezcla final de MurmurHash3 (fmix64); dispersa los bits de un valor de 64 bits.
+     *
+     * @param h valor de entrada
+     * @return valor mezclado
+     */
+    static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
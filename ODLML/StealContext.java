@@ -0,0 +1,97 @@
+// StealContext.java
+/**
+ * Informacion que recibe {@link LoadBalancingStrategy#selectDonors} al decidir un robo.
+ *
+ * La mantiene el hilo de protocolo de cada contexto: los tamaños de cola de la
+ * subasta en curso, la topologia (nodo de cada proceso) y el historial de robos a
+ * cada donador (latencia de la respuesta, robos con y sin datos). Se reutiliza entre
+ * subastas; las estrategias no deben guardar referencias a sus arreglos.
+ */
+public final class StealContext {
+
+    /** Peso de la ultima medicion en el promedio movil de latencia. */
+    private static final double ALFA = 0.2;
+
+    private final int myId;
+    private final String[] nodes;
+    final int[] sizes;
+    int ownSize;
+    int attempt;
+    private final double[] latencyNs;
+    private final int[] successes;
+    private final int[] failures;
+
+    /**
+     * @param myId  rank propio
+     * @param nodes nombre de nodo de cada proceso
+     * @param sizes arreglo (compartido con el protocolo) con el tamaño de cola de cada proceso
+     */
+    StealContext(int myId, String[] nodes, int[] sizes) {
+        this.myId = myId;
+        this.nodes = nodes;
+        this.sizes = sizes;
+        this.latencyNs = new double[sizes.length];
+        this.successes = new int[sizes.length];
+        this.failures = new int[sizes.length];
+    }
+
+    /** Registra la respuesta de un donador a un robo. */
+    void record(int donor, long nanos, boolean gotData) {
+        latencyNs[donor] = (latencyNs[donor] == 0) ? nanos : (1 - ALFA) * latencyNs[donor] + ALFA * nanos;
+        if (gotData) {
+            successes[donor]++;
+        } else {
+            failures[donor]++;
+        }
+    }
+
+    /** @return rank propio */
+    public int getMyId() {
+        return myId;
+    }
+
+    /** @return numero de procesos */
+    public int getTotal() {
+        return sizes.length;
+    }
+
+    /** @return tamaño de cola de cada proceso segun la subasta (el propio en 0) */
+    public int[] getSizes() {
+        return sizes;
+    }
+
+    /** @return tamaño de la cola propia */
+    public int getOwnSize() {
+        return ownSize;
+    }
+
+    /** @return subastas consecutivas previas que no encontraron datos */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /** @return nombre del nodo del proceso 'rank' */
+    public String getNode(int rank) {
+        return nodes[rank];
+    }
+
+    /** @return true si 'rank' esta en el mismo nodo que este proceso */
+    public boolean sameNode(int rank) {
+        return nodes[rank].equals(nodes[myId]);
+    }
+
+    /** @return latencia media (ns) de los robos a 'rank', o 0 sin historial */
+    public double getLatencyNs(int rank) {
+        return latencyNs[rank];
+    }
+
+    /** @return robos a 'rank' que trajeron datos */
+    public int getSuccesses(int rank) {
+        return successes[rank];
+    }
+
+    /** @return robos a 'rank' que no trajeron datos */
+    public int getFailures(int rank) {
+        return failures[rank];
+    }
+}
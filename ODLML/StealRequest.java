@@ -0,0 +1,31 @@
+// StealRequest.java
+/**
+ * Peticion de robo decidida por una estrategia: a que proceso pedir datos y cuantos.
+ */
+public final class StealRequest {
+
+    private final int donor;
+    private final int amount;
+
+    /**
+     * @param donor  rank del donador
+     * @param amount elementos pedidos; 0 deja que el donador decida (reparto equitativo)
+     */
+    public StealRequest(int donor, int amount) {
+        this.donor = donor;
+        this.amount = Math.max(amount, 0);
+    }
+
+    public int getDonor() {
+        return donor;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return donor + ":" + amount;
+    }
+}
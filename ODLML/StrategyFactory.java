@@ -5,6 +5,7 @@ public final class StrategyFactory {
         switch (t) {
             case ROUND_ROBIN:   return new RoundRobinStrategy();
             case WORK_STEALING: return new WorkStealingStrategy();
+            case MULTI_DONOR:   return new MultiDonorStrategy();
             case AUCTION:
             default:            return new AuctionStrategy();
         }
@@ -1,5 +1,5 @@
 public enum StrategyType {
-    AUCTION, ROUND_ROBIN, WORK_STEALING;
+    AUCTION, ROUND_ROBIN, WORK_STEALING, MULTI_DONOR;
 
     public static StrategyType fromString(String s) {
         if (s == null) return AUCTION;
@@ -9,6 +9,8 @@ public enum StrategyType {
             case "round_robin":   return ROUND_ROBIN;
             case "workstealing":
             case "work_stealing": return WORK_STEALING;
+            case "multidonor":
+            case "multi_donor":   return MULTI_DONOR;
             default:              return AUCTION;
         }
     }
@@ -0,0 +1,64 @@
+// Task.java
+import mpi.MPIException;
+
+import java.io.IOException;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Tarea de fork-join distribuido (ver {@link ForkJoin}).
+ *
+ * Es un elemento de trabajo DLML: puede robarse y ejecutarse en otro proceso, por
+ * lo que debe seguir las reglas de {@link DataLike} (POJO con constructor sin
+ * argumentos, getters y setters). El JSON incluye la clase concreta, de modo que
+ * en un mismo ForkJoin pueden convivir varias subclases.
+ *
+ * Los campos de ruteo (dueño, join y posicion) los asigna el runtime al hacer
+ * Spawn: indican a que proceso y a que join debe volver el resultado.
+ *
+ * @param <R> tipo del resultado
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class")
+public abstract class Task<R> implements DataLike {
+
+    private int owner = -1;
+    private int join = -1;
+    private int slot = 0;
+
+    /**
+     * Ejecuta la tarea. Antes de regresar debe llamar exactamente una vez a
+     * {@link ForkJoin#Complete} (resultado directo) o, tras uno o mas
+     * {@link ForkJoin#Spawn}, a {@link ForkJoin#Join} (resultado diferido).
+     *
+     * @param fj runtime en el que se ejecuta
+     * @throws MPIException si ocurre un error de comunicacion con MPI
+     * @throws IOException si hay un problema de serializacion
+     */
+    protected abstract void compute(ForkJoin<R> fj) throws MPIException, IOException;
+
+    /** @return rank al que se devuelve el resultado */
+    public int getOwner() {
+        return owner;
+    }
+
+    public void setOwner(int owner) {
+        this.owner = owner;
+    }
+
+    /** @return join (en el dueño) que espera el resultado; -1 para la tarea raiz */
+    public int getJoin() {
+        return join;
+    }
+
+    public void setJoin(int join) {
+        this.join = join;
+    }
+
+    /** @return posicion del resultado entre los hijos del join */
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+}
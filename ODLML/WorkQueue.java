@@ -0,0 +1,123 @@
+// WorkQueue.java
+import mpi.Datatype;
+import mpi.MPI;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Cola local de elementos de trabajo de DLML.
+ *
+ * El hilo de trabajo usa addFirst/removeFirst; el hilo de protocolo dona y recibe
+ * lotes ya codificados (registros [longitud:int][JSON] consecutivos, ver
+ * {@link ItemCodec}). Ambos hilos no operan a la vez sobre la cola: el protocolo solo
+ * la modifica mientras el trabajador espera en DLML.Get.
+ *
+ * Implementaciones: {@link HeapQueue} (por defecto), {@link OffHeapQueue}
+ * ({@code -Dodlml.queue=offheap}) y {@link ColumnarQueue} (elementos
+ * {@link ColumnarLike}, cuyos lotes son columnas de enteros en lugar de registros).
+ */
+interface WorkQueue {
+
+    /** Inserta un elemento al inicio de la cola. */
+    void addFirst(DataLike item);
+
+    /** Extrae el primer elemento (decodificandolo si hace falta). */
+    DataLike removeFirst();
+
+    /** Numero de elementos en la cola. */
+    int size();
+
+    /** true si la cola no tiene elementos. */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Extrae los primeros 'c' elementos como un lote codificado.
+     * El buffer devuelto (posicion 0, limite = bytes del lote) solo es valido hasta
+     * la siguiente operacion sobre la cola.
+     *
+     * @param c numero de elementos (a lo mas size())
+     * @return buffer directo con el lote
+     * @throws IOException si falla la codificacion
+     */
+    ByteBuffer takeBatch(int c) throws IOException;
+
+    /**
+     * Como {@link #takeBatch(int)}, pero eligiendo los elementos segun su afinidad
+     * ({@link AffinityLike}): primero los afines al nodo del receptor, luego los que
+     * no tienen afinidad o son de otro nodo y al final los afines al nodo propio.
+     * Por omision ignora la afinidad.
+     *
+     * @param c       numero de elementos (a lo mas size())
+     * @param destino nodo del proceso receptor
+     * @param propio  nodo de este proceso
+     * @return buffer directo con el lote
+     * @throws IOException si falla la codificacion
+     */
+    default ByteBuffer takeBatch(int c, String destino, String propio) throws IOException {
+        return takeBatch(c);
+    }
+
+    /**
+     * Reserva espacio para recibir un lote de 'bytes' bytes.
+     *
+     * @param bytes tamaño del lote
+     * @return buffer directo donde escribir el lote desde su posicion 0
+     */
+    ByteBuffer reserveBatch(int bytes);
+
+    /**
+     * Agrega al final de la cola los 'c' elementos del lote recibido en la ultima reserva.
+     *
+     * @param c numero de elementos del lote
+     * @throws IOException si falla la decodificacion
+     */
+    void commitBatch(int c) throws IOException;
+
+    /**
+     * Agrega al final de 'out' los elementos dados en el formato de lote de esta cola
+     * (lo que {@link #commitBatch} espera recibir); lo usa el reparto inicial.
+     *
+     * @param items elementos a codificar
+     * @param out   buffer destino
+     * @throws IOException si falla la codificacion
+     */
+    default void encodeBatch(List<? extends DataLike> items, SerialBuffer out) throws IOException {
+        for (DataLike item : items) {
+            ItemCodec.encode(item, out);
+        }
+    }
+
+    /** Tipo MPI con el que viajan los lotes sin comprimir. */
+    default Datatype batchType() {
+        return MPI.BYTE;
+    }
+
+    /** Bytes por elemento de {@link #batchType()}. */
+    default int batchUnit() {
+        return 1;
+    }
+
+    /**
+     * Crea la cola configurada con -Dodlml.queue (heap | offheap), o una
+     * {@link ColumnarQueue} si los elementos son {@link ColumnarLike} (salvo con
+     * -Dodlml.columnar=false).
+     *
+     * @param cls clase de los elementos (para decodificar lotes recibidos)
+     * @return cola vacia
+     */
+    static WorkQueue create(Class<? extends DataLike> cls) {
+        if (cls != null && ColumnarLike.class.isAssignableFrom(cls)
+                && !"false".equalsIgnoreCase(System.getProperty("odlml.columnar", "true"))) {
+            return new ColumnarQueue(cls.asSubclass(ColumnarLike.class));
+        }
+        String tipo = System.getProperty("odlml.queue", "heap");
+        if ("offheap".equalsIgnoreCase(tipo.trim())) {
+            return new OffHeapQueue(Integer.getInteger("odlml.queue.capacity", 1 << 20), cls);
+        }
+        return new HeapQueue(cls);
+    }
+}
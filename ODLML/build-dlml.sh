@@ -6,7 +6,7 @@ OPENMPI_HOME=${OPENMPI_HOME:-/opt/openmpi-5.0.8}
 # =====================================================================
 
 #SRC_FILES="DataLike.java DLML.java DLMLOne.java Protocol.java"
-SRC_FILES="AuctionStrategy.java  LoadBalancingStrategy.java Protocol.java RoundRobinStrategy.java StrategyFactory.java StrategyType.java WorkStealingStrategy.java DLML.java DLMLOne.java DataLike.java"
+SRC_FILES="AuctionStrategy.java  LoadBalancingStrategy.java Protocol.java RoundRobinStrategy.java StrategyFactory.java StrategyType.java WorkStealingStrategy.java DLML.java DLMLOne.java DataLike.java Sketch.java HyperLogLog.java CountMinSketch.java SerialBuffer.java ItemPool.java ItemCodec.java WorkQueue.java HeapQueue.java OffHeapQueue.java DLMLContext.java Task.java Continuation.java ForkJoin.java AffinityLike.java Compression.java StealRequest.java StealContext.java MultiDonorStrategy.java Expander.java ResultStream.java DLMLStats.java ColumnarLike.java ColumnarQueue.java LocalChannel.java Backoff.java NodeShared.java"
 BUILD_DIR="build-dlml"
 DIST_DIR="dist"
 VER="1.0"
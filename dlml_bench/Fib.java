@@ -0,0 +1,90 @@
+// Fib.java
+import mpi.MPI;
+import mpi.MPIException;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Fibonacci recursivo con {@link ForkJoin}: ejemplo y prueba del fork-join
+ * distribuido.
+ *
+ * Cada tarea con n >= fib.cutoff crea dos hijos (n-1 y n-2) y los suma en su
+ * continuacion; por debajo del corte calcula en secuencia. Los hijos se roban entre
+ * procesos, asi que los resultados regresan por mensajes RESULTADO a joins de otros
+ * procesos. Al terminar, el raiz imprime fib(fib.n), lo compara con el valor
+ * secuencial y emite la linea CSV de Report_Csv. Un resultado incorrecto termina
+ * con codigo 1.
+ */
+public class Fib extends Task<Long> {
+
+    static final int N = Integer.getInteger("fib.n", 32);
+    static final int CORTE = Integer.getInteger("fib.cutoff", 18);
+
+    private int n;
+
+    public Fib() {
+    }
+
+    public Fib(int n) {
+        this.n = n;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public void setN(int n) {
+        this.n = n;
+    }
+
+    @Override
+    protected void compute(ForkJoin<Long> fj) throws MPIException, IOException {
+        if (n < CORTE) {
+            fj.Complete(secuencial(n));
+            return;
+        }
+        fj.Spawn(new Fib(n - 1));
+        fj.Spawn(new Fib(n - 2));
+        fj.Join((r, f) -> f.Complete(r.get(0) + r.get(1)));
+    }
+
+    /** fib(n) recursivo, sin DLML (trabajo de las hojas). */
+    static long secuencial(int n) {
+        return (n < 2) ? n : secuencial(n - 1) + secuencial(n - 2);
+    }
+
+    /** fib(n) iterativo, para verificar el resultado. */
+    static long esperado(int n) {
+        long a = 0, b = 1;
+        for (int i = 0; i < n; i++) {
+            long t = a + b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    public static void main(String[] args) throws MPIException, IOException {
+        DLML.Init(args);
+
+        ForkJoin<Long> fj = DLML.NewForkJoin(MPI.COMM_WORLD, Long.class);
+        long inicio = System.nanoTime();
+        Long r = fj.Invoke(DLML.id == DLML.ROOT ? new Fib(N) : null);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        String params = String.format(Locale.ROOT, "n=%d cutoff=%d", N, CORTE);
+        boolean ok = true;
+        if (DLML.id == DLML.ROOT) {
+            ok = r != null && r == esperado(N);
+            System.out.println("fib(" + N + ") = " + r + (ok ? "" : " (esperado " + esperado(N) + ")"));
+        }
+        fj.getContext().Report_Csv("fib", params, segundos);
+
+        fj.Finalize();
+        DLML.Finalize();
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+}
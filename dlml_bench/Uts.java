@@ -0,0 +1,150 @@
+// Uts.java
+import mpi.MPIException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Unbalanced Tree Search (UTS): cuenta los nodos de un arbol implicito y muy
+ * desbalanceado, para medir el balanceo de carga de DLML.
+ *
+ * Tipos de arbol (-Duts.type):
+ *  - geometric (por omision): cada nodo con profundidad menor a uts.depth tiene un
+ *    numero de hijos con distribucion geometrica de media uts.b.
+ *  - binomial: la raiz tiene uts.b0 hijos y cualquier otro nodo tiene uts.m hijos
+ *    con probabilidad uts.q (o ninguno); con m*q cercano a 1 el arbol es pequeño
+ *    en promedio pero con subarboles muy profundos e impredecibles.
+ *
+ * Otros parametros: uts.seed (semilla de la raiz) y uts.k (elementos iniciales por
+ * proceso para DLML.Distribute). Al terminar, el raiz imprime el total de nodos y
+ * la linea CSV de DLML.Report_Csv.
+ */
+class Uts {
+
+    static final String TIPO = System.getProperty("uts.type", "geometric");
+    static final double B = Double.parseDouble(System.getProperty("uts.b", "4.0"));
+    static final int PROFUNDIDAD = Integer.getInteger("uts.depth", 10);
+    static final int B0 = Integer.getInteger("uts.b0", 2000);
+    static final int M = Integer.getInteger("uts.m", 5);
+    static final double Q = Double.parseDouble(System.getProperty("uts.q", "0.199995"));
+    static final long SEMILLA = Long.getLong("uts.seed", 19L);
+    static final int K = Integer.getInteger("uts.k", 8);
+
+    static final boolean BINOMIAL = "binomial".equalsIgnoreCase(TIPO);
+
+    /** Pila local de explorar (semillas y profundidades); crece si hace falta. */
+    static long[] pilaS = new long[1024];
+    static int[] pilaP = new int[1024];
+
+    /** Valor uniforme en [0, 1) derivado de la semilla. */
+    static double uniforme(long semilla) {
+        return (Sketch.mix64(semilla) >>> 11) * 0x1.0p-53;
+    }
+
+    /** Semilla del hijo i. */
+    static long semillaHijo(long semilla, int i) {
+        return Sketch.mix64(semilla + 0x9E3779B97F4A7C15L * (i + 1));
+    }
+
+    /** Numero de hijos de un nodo. */
+    static int numHijos(long semilla, int profundidad) {
+        double u = uniforme(semilla);
+        if (BINOMIAL) {
+            if (profundidad == 0) return B0;
+            return (u < Q) ? M : 0;
+        }
+        if (profundidad >= PROFUNDIDAD) return 0;
+        // Geometrica con media B: P(n) = p (1-p)^n, p = 1 / (1 + B)
+        return (int) Math.floor(Math.log(1 - u) / Math.log(B / (1 + B)));
+    }
+
+    /** Trabajo restante estimado para DLML.ShouldInsert. */
+    static int restante(int profundidad) {
+        return BINOMIAL ? Integer.MAX_VALUE : PROFUNDIDAD - profundidad;
+    }
+
+    /**
+     * Explora el subarbol de un nodo con una pila local; los hijos se insertan en
+     * DLML o se exploran aqui segun DLML.ShouldInsert.
+     *
+     * @return nodos contados en linea (incluido el propio)
+     */
+    static long explorar(long semilla, int profundidad) {
+        long nodos = 0;
+        int tope = 0;
+        pilaS[tope] = semilla;
+        pilaP[tope++] = profundidad;
+        while (tope > 0) {
+            long s = pilaS[--tope];
+            int p = pilaP[tope];
+            nodos++;
+            int n = numHijos(s, p);
+            for (int i = 0; i < n; i++) {
+                long hs = semillaHijo(s, i);
+                if (DLML.ShouldInsert(restante(p + 1))) {
+                    UtsNode hijo = DLML.Obtain(UtsNode.class);
+                    hijo.setSemilla(hs);
+                    hijo.setProfundidad(p + 1);
+                    DLML.Insert(hijo);
+                } else {
+                    if (tope == pilaS.length) {
+                        pilaS = Arrays.copyOf(pilaS, tope * 2);
+                        pilaP = Arrays.copyOf(pilaP, tope * 2);
+                    }
+                    pilaS[tope] = hs;
+                    pilaP[tope++] = p + 1;
+                }
+            }
+        }
+        return nodos;
+    }
+
+    /** Hijos inmediatos para la expansion inicial de DLML.Distribute. */
+    static List<UtsNode> expandir(UtsNode nodo) {
+        int n = numHijos(nodo.getSemilla(), nodo.getProfundidad());
+        if (n == 0) return Collections.emptyList();
+        List<UtsNode> hijos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            hijos.add(new UtsNode(semillaHijo(nodo.getSemilla(), i), nodo.getProfundidad() + 1));
+        }
+        return hijos;
+    }
+
+    public static void main(String[] args) throws MPIException, IOException {
+        DLML.setDataClass(UtsNode.class);
+        DLML.Init(args);
+
+        long inicio = System.nanoTime();
+
+        // La expansion inicial cuenta aparte los nodos internos que reemplaza
+        long[] internos = {0};
+        List<UtsNode> raiz = (DLML.id == DLML.ROOT)
+                ? Collections.singletonList(new UtsNode(SEMILLA, 0)) : null;
+        DLML.Distribute(raiz, K, nodo -> {
+            List<UtsNode> h = expandir(nodo);
+            if (!h.isEmpty()) internos[0]++;
+            return h;
+        });
+
+        long nodos = internos[0];
+        UtsNode elem;
+        while ((elem = DLML.Get(UtsNode.class)) != null) {
+            nodos += explorar(elem.getSemilla(), elem.getProfundidad());
+            DLML.Recycle(elem);
+        }
+        long total = DLML.Reduce_Add(nodos);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        String params = BINOMIAL
+                ? String.format(Locale.ROOT, "type=binomial b0=%d m=%d q=%s seed=%d", B0, M, Q, SEMILLA)
+                : String.format(Locale.ROOT, "type=geometric b=%s depth=%d seed=%d", B, PROFUNDIDAD, SEMILLA);
+        DLML.OnlyOne(() -> System.out.println("Nodos UTS: " + total + " (" + params + ")"));
+        DLML.Report_Csv("uts", params, segundos);
+
+        DLML.Finalize();
+    }
+}
@@ -0,0 +1,52 @@
+// UtsNode.java
+/**
+ * Nodo del arbol de Unbalanced Tree Search (UTS).
+ *
+ * Un nodo queda determinado por su semilla y su profundidad: el numero de hijos y
+ * la semilla de cada hijo se derivan de la semilla con una funcion hash, de modo
+ * que el arbol es el mismo sin importar que proceso explore cada nodo.
+ *
+ * POJO que implementa DataLike, serializable mediante Jackson para DLML.
+ */
+public class UtsNode implements DataLike {
+
+    /** Semilla del nodo. */
+    private long semilla;
+
+    /** Profundidad del nodo (la raiz tiene 0). */
+    private int profundidad;
+
+    /** Constructor por defecto (requerido por Jackson). */
+    public UtsNode() {
+    }
+
+    /**
+     * @param semilla     semilla del nodo
+     * @param profundidad profundidad del nodo
+     */
+    public UtsNode(long semilla, int profundidad) {
+        this.semilla = semilla;
+        this.profundidad = profundidad;
+    }
+
+    public long getSemilla() {
+        return semilla;
+    }
+
+    public void setSemilla(long semilla) {
+        this.semilla = semilla;
+    }
+
+    public int getProfundidad() {
+        return profundidad;
+    }
+
+    public void setProfundidad(int profundidad) {
+        this.profundidad = profundidad;
+    }
+
+    @Override
+    public String toString() {
+        return "UtsNode{semilla=" + semilla + ", profundidad=" + profundidad + "}";
+    }
+}
@@ -0,0 +1,124 @@
+#!/bin/bash
+set -e
+
+# Barrido de escalabilidad de DLML: N-Reinas, UTS, Traffic y Fib (fork-join) con cada estrategia
+# de balanceo y cada numero de procesos. Requiere ../ODLML/dist/dlml-1.0-all.jar
+# (ver ODLML/build-dlml.sh).
+#
+#   ./run-bench.sh                 # fuerte y debil
+#   MODE=strong ./run-bench.sh     # solo escalabilidad fuerte
+#   NPS="1 2 4 8 16" STRATEGIES="workstealing multidonor" APPS="uts" ./run-bench.sh
+#
+# Cada ejecucion imprime una linea "CSV,..." (DLML.Report_Csv); aqui se juntan en
+# $OUT (results.csv) y al final se agrega la eficiencia respecto a np=1.
+#
+# Escalabilidad debil: UTS binomial con uts.b0 proporcional a np (el tamaño
+# esperado del arbol crece linealmente con b0) y Traffic con traffic.files
+# proporcional a np (hasta 100 archivos). N-Reinas y Fib solo participan en la fuerte.
+#
+# Traffic reparte sus archivos por afinidad (-Dtraffic.placement). Si no se da
+# TRAFFIC_PLACEMENT, se genera una ubicacion con los archivos en ronda entre los
+# nodos de TRAFFIC_HOSTS (por omision este host), que deben tener su copia local
+# de waze/.
+
+NPS=${NPS:-"1 2 4 8"}
+STRATEGIES=${STRATEGIES:-"workstealing roundrobin auction multidonor"}
+APPS=${APPS:-"nqueens uts traffic fib"}
+MODE=${MODE:-"strong weak"}
+REPS=${REPS:-1}
+OUT=${OUT:-results.csv}
+MPIRUN_OPTS=${MPIRUN_OPTS:-"--oversubscribe"}
+
+# Tamaños de problema
+NQUEENS_N=${NQUEENS_N:-15}
+UTS_STRONG=${UTS_STRONG:-"-Duts.type=geometric -Duts.b=4 -Duts.depth=10"}
+UTS_WEAK_B0=${UTS_WEAK_B0:-2000}          # raices por proceso (binomial)
+TRAFFIC_FILES=${TRAFFIC_FILES:-100}
+TRAFFIC_WEAK=${TRAFFIC_WEAK:-12}           # archivos por proceso
+TRAFFIC_HOSTS=${TRAFFIC_HOSTS:-$(hostname)}
+FIB_N=${FIB_N:-32}
+FIB_CUTOFF=${FIB_CUTOFF:-18}
+
+DIR=$(cd "$(dirname "$0")" && pwd)
+JAR="$DIR/../ODLML/dist/dlml-1.0-all.jar"
+HEADER="mode,app,strategy,np,params,makespan_s,items,steals,failed_steals,items_stolen,idle_avg_s,idle_max_s"
+
+if [ ! -f "$JAR" ]; then
+  echo "No existe $JAR; ejecuta primero ODLML/build-dlml.sh" >&2
+  exit 1
+fi
+
+echo ">> Compilando aplicaciones..."
+(cd "$DIR/../dlml_nqueens" && mpijavac -cp "$JAR:." Data.java Application.java)
+(cd "$DIR/../dlml_traffic" && mpijavac -cp "$JAR:." *.java)
+(cd "$DIR" && mpijavac -cp "$JAR:." UtsNode.java Uts.java Fib.java)
+
+RAW=$(mktemp)
+if [ -z "$TRAFFIC_PLACEMENT" ]; then
+  TRAFFIC_PLACEMENT=$(mktemp)
+  GENERADA=$TRAFFIC_PLACEMENT
+  hosts=($TRAFFIC_HOSTS)
+  for i in $(seq 100); do
+    echo "waze/$i.json ${hosts[$(( (i - 1) % ${#hosts[@]} ))]}"
+  done > "$TRAFFIC_PLACEMENT"
+fi
+trap 'rm -f "$RAW" $GENERADA' EXIT
+
+# corre <modo> <app> <estrategia> <np> <dir> <clase> [props...]
+corre() {
+  local modo=$1 app=$2 est=$3 np=$4 dir=$5 clase=$6
+  shift 6
+  echo ">> $modo $app $est np=$np $*"
+  (cd "$dir" && ODLML_STRATEGY=$est mpirun $MPIRUN_OPTS -np "$np" -x ODLML_STRATEGY \
+      java "$@" -cp "$JAR:." "$clase") \
+    | grep '^CSV,' | sed "s/^CSV,/$modo,/" >> "$RAW" || echo "   (fallo: $modo $app $est np=$np)" >&2
+}
+
+for rep in $(seq "$REPS"); do
+  for np in $NPS; do
+    for est in $STRATEGIES; do
+      for app in $APPS; do
+        for modo in $MODE; do
+          case "$app/$modo" in
+            nqueens/strong)
+              corre "$modo" "$app" "$est" "$np" "$DIR/../dlml_nqueens" Application -Dnqueens.n="$NQUEENS_N" ;;
+            uts/strong)
+              corre "$modo" "$app" "$est" "$np" "$DIR" Uts $UTS_STRONG ;;
+            uts/weak)
+              corre "$modo" "$app" "$est" "$np" "$DIR" Uts -Duts.type=binomial -Duts.b0=$((UTS_WEAK_B0 * np)) ;;
+            traffic/strong)
+              corre "$modo" "$app" "$est" "$np" "$DIR/../dlml_traffic" Traffic -Dtraffic.files="$TRAFFIC_FILES" -Dtraffic.placement="$TRAFFIC_PLACEMENT" ;;
+            traffic/weak)
+              f=$((TRAFFIC_WEAK * np)); [ "$f" -gt 100 ] && f=100
+              corre "$modo" "$app" "$est" "$np" "$DIR/../dlml_traffic" Traffic -Dtraffic.files="$f" -Dtraffic.placement="$TRAFFIC_PLACEMENT" ;;
+            fib/strong)
+              corre "$modo" "$app" "$est" "$np" "$DIR" Fib -Dfib.n="$FIB_N" -Dfib.cutoff="$FIB_CUTOFF" ;;
+          esac
+        done
+      done
+    done
+  done
+done
+
+# Eficiencia: fuerte T1 / (np * Tnp); debil T1 / Tnp. T1 es el promedio de las
+# ejecuciones con np=1 de la misma app, estrategia y modo.
+echo ">> Escribiendo $OUT"
+{
+  echo "$HEADER,efficiency"
+  awk -F, '
+    { fila[NR] = $0; m[NR] = $1; a[NR] = $2; e[NR] = $3; p[NR] = $4; t[NR] = $6
+      if ($4 == 1) { s[$1 "," $2 "," $3] += $6; c[$1 "," $2 "," $3]++ } }
+    END {
+      for (i = 1; i <= NR; i++) {
+        k = m[i] "," a[i] "," e[i]
+        ef = ""
+        if (c[k] > 0 && t[i] > 0) {
+          t1 = s[k] / c[k]
+          ef = sprintf("%.4f", (m[i] == "strong") ? t1 / (p[i] * t[i]) : t1 / t[i])
+        }
+        print fila[i] "," ef
+      }
+    }' "$RAW"
+} > "$OUT"
+
+echo "OK. Resultados en $OUT"
@@ -1,20 +1,33 @@
 import mpi.MPIException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Resuelve el problema de las N reinas de forma distribuida usando DLML sobre MPI.
  *
  * Estrategia:
- *  - Proceso raiz inserta el primer estado en la lista distribuida (DLML).
- *  - Cada proceso extrae estados (tableros parciales) y prueba colocar una reina
- *    en cada columna del renglón actual, verificando que no haya conflicto.
- *  - Los estados válidos se reinsertan en DLML para su exploración (búsqueda en anchura).
- *  - Cuando un tablero está completo (renglon == TAM), se contabiliza una solución local.
+ *  - El proceso raiz expande los primeros renglones y reparte la frontera entre
+ *    todos los procesos con un solo scatterv (DLML.Distribute), sin subastas de arranque.
+ *  - Cada proceso extrae estados (tableros parciales como máscaras de bits) y coloca
+ *    una reina en cada casilla libre del renglón actual; las casillas libres se
+ *    obtienen con operaciones de bits sobre columnas y diagonales atacadas.
+ *  - Los estados válidos se reinsertan en DLML, o se exploran en línea cuando la
+ *    cola local ya tiene reserva suficiente (DLML.ShouldInsert). Los objetos Data
+ *    explorados se reciclan (DLML.Recycle / DLML.Obtain) para no asignar uno por hijo.
+ *  - En el último renglón cada casilla libre es una solución; se cuentan con bitCount.
+ *  - Simetría: en el primer renglón solo se exploran las columnas de la mitad
+ *    izquierda con peso 2 (su reflejo da las mismas soluciones); si TAM es impar,
+ *    la columna central se explora con peso 1. El conteo es exacto.
  *  - Se realiza una reducción por suma para obtener el total global de soluciones.
  *
  * Requisitos sobre la clase Data:
- *  - Debe exponer: int TAM (tamaño del tablero), int getRenglon(), void setRenglon(int),
- *    int[] getTablero(), constructor Data(int renglonInicial), y constructor Data(int[] tablero, int renglon).
+ *  - Debe exponer: int TAM, int TODAS, getters de columnas, diagonales,
+ *    renglón y peso, constructor Data(int renglonInicial) y
+ *    constructor Data(int columnas, int diag1, int diag2, int renglon, int peso).
  */
 class Application {
 
@@ -22,60 +35,104 @@ class Application {
     static int solTotal = 0;
 
     /**
-     * Verifica si colocar una reina en la columna {@code col} del renglón actual
-     * no entra en conflicto con las reinas previamente colocadas.
+     * Explora el subárbol de un estado y devuelve las soluciones encontradas en línea.
+     * Cada hijo se inserta en DLML o se explora recursivamente según
+     * {@link DLML#ShouldInsert(int)}, de modo que solo se crean objetos Data cuando
+     * hace falta reserva de trabajo para otros procesos.
      *
-     * Conflictos comprobados:
-     *  - Misma columna.
-     *  - Diagonal principal.
-     *  - Diagonal secundaria.
+     * @param columnas máscara de columnas ocupadas
+     * @param diag1    máscara de diagonales principales atacadas
+     * @param diag2    máscara de diagonales secundarias atacadas
+     * @param renglon  renglón actual (1..TAM)
+     * @param peso     peso del estado
+     * @return soluciones (ponderadas) contadas en línea
+     */
+    static int explorar(int columnas, int diag1, int diag2, int renglon, int peso) {
+        int libres = Data.TODAS & ~(columnas | diag1 | diag2);
+        if (renglon == Data.TAM) {
+            return Integer.bitCount(libres) * peso;
+        }
+        if (renglon == 1) {
+            // Primer renglón: mitad izquierda con peso doble y columna central (TAM impar)
+            int mitad = (1 << (Data.TAM / 2)) - 1;
+            int sol = hijos(columnas, diag1, diag2, renglon, libres & mitad, 2 * peso);
+            if ((Data.TAM & 1) == 1) {
+                sol += hijos(columnas, diag1, diag2, renglon, libres & (1 << (Data.TAM / 2)), peso);
+            }
+            return sol;
+        }
+        return hijos(columnas, diag1, diag2, renglon, libres, peso);
+    }
+
+    /**
+     * Coloca una reina en cada casilla de 'libres' y avanza al siguiente renglón
+     * desplazando las diagonales atacadas; el hijo se inserta o se explora en línea.
      *
-     * Nota: El arreglo de tablero almacena, por renglón (indice 0..TAM-1),
-     * la columna (1..TAM) en la que se colocó la reina.
+     * @return soluciones (ponderadas) contadas en línea
+     */
+    static int hijos(int columnas, int diag1, int diag2, int renglon, int libres, int peso) {
+        int sol = 0;
+        while (libres != 0) {
+            int bit = libres & -libres; // casilla libre de menor índice
+            libres ^= bit;
+            int c = columnas | bit;
+            int d1 = ((diag1 | bit) << 1) & Data.TODAS;
+            int d2 = (diag2 | bit) >>> 1;
+            if (DLML.ShouldInsert(Data.TAM - renglon)) {
+                Data nuevo = DLML.Obtain(Data.class);
+                nuevo.setColumnas(c);
+                nuevo.setDiag1(d1);
+                nuevo.setDiag2(d2);
+                nuevo.setRenglon(renglon + 1);
+                nuevo.setPeso(peso);
+                DLML.Insert(nuevo);
+            } else {
+                sol += explorar(c, d1, d2, renglon + 1, peso);
+            }
+        }
+        return sol;
+    }
+
+    /**
+     * Hijos inmediatos de un estado para la expansion inicial de DLML.Distribute,
+     * con la misma simetria del primer renglón que {@link #explorar}.
      *
-     * @param col     columna propuesta (1..Data.TAM)
-     * @param tablero estado parcial del tablero (con renglón actual ya apuntando a la fila de trabajo)
-     * @return true si hay conflicto (la reina seria comida), false si es seguro colocarla
+     * @param d estado a expandir
+     * @return hijos del estado; vacio en el último renglón (el estado se reparte tal cual)
      */
-    static boolean esComida(int col, Data tablero) {
-        boolean comida = true;
-        int i, j;
-        int reng = tablero.getRenglon() - 1; // fila previa a la que intentamos llenar
-
-        // Verifica columna repetida en filas anteriores
-        i = reng - 1;
-        while ((i >= 0) && (tablero.getTablero()[i] != col)) {
-            i--;
+    static List<Data> expandir(Data d) {
+        int renglon = d.getRenglon();
+        if (renglon >= Data.TAM) {
+            return Collections.emptyList();
         }
-        if (i < 0) {
-            // Verifica diagonal principal (↘)
-            i = reng - 1;
-            j = col - 1;
-            while ((i >= 0) && (j >= 0) && (tablero.getTablero()[i] != j)) {
-                i--;
-                j--;
-            }
-            if ((i < 0) || (j < 0)) {
-                // Verifica diagonal secundaria (↗)
-                i = reng - 1;
-                j = col + 1;
-                while ((i >= 0) && (j <= Data.TAM) && (tablero.getTablero()[i] != j)) {
-                    i--;
-                    j++;
-                }
-                if ((i < 0) || (j > Data.TAM)) {
-                    comida = false; // no se encontraron conflictos
-                }
+        int libres = d.libres();
+        List<Data> hijos = new ArrayList<>();
+        if (renglon == 1) {
+            int mitad = (1 << (Data.TAM / 2)) - 1;
+            agregarHijos(d, libres & mitad, 2 * d.getPeso(), hijos);
+            if ((Data.TAM & 1) == 1) {
+                agregarHijos(d, libres & (1 << (Data.TAM / 2)), d.getPeso(), hijos);
             }
+        } else {
+            agregarHijos(d, libres, d.getPeso(), hijos);
+        }
+        return hijos;
+    }
+
+    /** Agrega a 'hijos' un estado por cada casilla de 'libres' en el renglón de 'd'. */
+    private static void agregarHijos(Data d, int libres, int peso, List<Data> hijos) {
+        while (libres != 0) {
+            int bit = libres & -libres;
+            libres ^= bit;
+            hijos.add(new Data(d.getColumnas() | bit,
+                               ((d.getDiag1() | bit) << 1) & Data.TODAS,
+                               (d.getDiag2() | bit) >>> 1,
+                               d.getRenglon() + 1, peso));
         }
-        return comida;
     }
 
     /**
      * Explora el espacio de soluciones a partir de los estados extraidos de DLML.
-     * Para cada estado, intenta colocar una reina en cada columna valida del renglón actual.
-     * - Si el tablero aun no se completa, inserta el nuevo estado en DLML.
-     * - Si se completa, incrementa el conteo local de soluciones.
      *
      * @return numero de soluciones encontradas por este proceso
      * @throws MPIException si ocurre un error en la interaccion con DLML/MPI
@@ -84,26 +141,9 @@ class Application {
         int numSol = 0;
         Data elem;
         while ((elem = DLML.Get(Data.class)) != null) {
-            for (int col = 1; col <= Data.TAM; col++) {
-                if (elem.getRenglon() < Data.TAM) {
-                    if (!esComida(col, elem)) {
-                        // Coloca reina y avanza renglón (clona estado para reinsertarlo)
-                        elem.getTablero()[elem.getRenglon() - 1] = col;
-                        elem.setRenglon(elem.getRenglon() + 1);
-
-                        Data nuevo = new Data(elem.getTablero().clone(), elem.getRenglon());
-                        DLML.Insert(nuevo);
-
-                        // Reestablece renglón (backtrack local del objeto compartido)
-                        elem.setRenglon(elem.getRenglon() - 1);
-                    }
-                } else {
-                    if (!esComida(col, elem)) {
-                        elem.getTablero()[elem.getRenglon() - 1] = col;
-                        numSol += 1; // tablero completo y valido
-                    }
-                }
-            }
+            numSol += explorar(elem.getColumnas(), elem.getDiag1(), elem.getDiag2(),
+                               elem.getRenglon(), elem.getPeso());
+            DLML.Recycle(elem); // el estado ya se exploró: su objeto se reutiliza para un hijo
         }
         return numSol;
     }
@@ -111,19 +151,21 @@ class Application {
     /**
      * Punto de entrada del programa.
      * 1) Configura la clase de datos y arranca DLML/MPI.
-     * 2) Inserta el estado inicial desde el proceso raiz.
+     * 2) Reparte la frontera inicial desde el proceso raiz (DLML.Distribute).
      * 3) Explora el arbol de busqueda y reduce el total de soluciones.
      * 4) Imprime resultados y tiempo de ejecucion.
      *
      * @param args argumentos del entorno MPI
      * @throws MPIException si ocurre un error de MPI
+     * @throws IOException si falla la serializacion de la frontera inicial
      */
-    public static void main(String[] args) throws MPIException {
+    public static void main(String[] args) throws MPIException, IOException {
         DLML.setDataClass(Data.class);
         DLML.Init(args);
 
-        // Estado inicial: renglón 1 vacío
-        DLML.OnlyOne(() -> DLML.Insert(new Data(1)));
+        // Estado inicial: renglón 1 vacío, expandido a ~8 estados por proceso
+        List<Data> inicial = (DLML.id == DLML.ROOT) ? Collections.singletonList(new Data(1)) : null;
+        DLML.Distribute(inicial, 8, Application::expandir);
 
         long inicio = System.nanoTime();
         int solParciales = calcularReinas();
@@ -135,6 +177,9 @@ class Application {
         long segundos = TimeUnit.SECONDS.convert(fin - inicio, TimeUnit.NANOSECONDS);
         System.out.println("Tiempo segundos: " + segundos);
 
+        // Linea CSV para dlml_bench/run-bench.sh
+        DLML.Report_Csv("nqueens", "n=" + Data.TAM, (fin - inicio) / 1e9);
+
         DLML.Finalize();
     }
 }
@@ -1,34 +1,53 @@
-import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * Representa el estado de un tablero en el problema de las N reinas.
- * 
- * Cada objeto almacena:
- *  - Un arreglo de tamaño TAM que indica, por renglón (índice 0..TAM-1),
- *    la columna (1..TAM) donde se colocó una reina.
- *  - El número de renglón actual que se está procesando.
+ *
+ * Cada objeto almacena, como máscaras de bits de TAM bits (bit i = columna i):
+ *  - Las columnas ya ocupadas por alguna reina.
+ *  - Las casillas del renglón actual atacadas por una diagonal principal (↘).
+ *  - Las casillas del renglón actual atacadas por una diagonal secundaria (↗).
+ * Además guarda el renglón actual que se está procesando y el peso del estado
+ * (cuántas soluciones representa cada solución de su subárbol; 2 cuando el
+ * subárbol tiene un reflejo simétrico que no se explora).
  *
  * Esta clase es un POJO que implementa DataLike y es serializable
- * mediante Jackson para el intercambio distribuido con DLML.
+ * mediante Jackson para el intercambio distribuido con DLML. Como su estado son
+ * cinco enteros, implementa además ColumnarLike: DLML transfiere los lotes donados
+ * como columnas MPI.INT, sin JSON.
  */
-public class Data implements DataLike {
+public class Data implements ColumnarLike {
+
+    /** Campos del registro columnar: columnas, diag1, diag2, renglon y peso. */
+    private static final int CAMPOS = 5;
+
+    /** Tamaño del tablero (número de reinas, a lo más 31); -Dnqueens.n, 15 por omisión. */
+    public static final int TAM = Integer.getInteger("nqueens.n", 15);
+
+    /** Máscara con las TAM columnas del tablero. */
+    public static final int TODAS = (1 << TAM) - 1;
 
-    /** Tamaño del tablero (número de reinas). */
-    public static final int TAM = 15;
+    /** Columnas ocupadas. */
+    private int columnas;
 
-    /** Arreglo que representa la posición de las reinas por renglón. */
-    private int[] tablero = new int[TAM];
+    /** Casillas del renglón actual atacadas por diagonales principales. */
+    private int diag1;
+
+    /** Casillas del renglón actual atacadas por diagonales secundarias. */
+    private int diag2;
 
     /** Renglón actual a procesar (1..TAM). */
     private int renglon;
 
+    /** Soluciones que representa cada solución de este subárbol (1 o 2). */
+    private int peso = 1;
+
     /** Constructor por defecto (requerido por Jackson). */
     public Data() {
     }
 
     /**
-     * Constructor que inicializa un estado con el renglón inicial.
+     * Constructor que inicializa un tablero vacío en el renglón indicado.
      *
      * @param renglon número de renglón inicial
      */
@@ -37,32 +56,83 @@ public class Data implements DataLike {
     }
 
     /**
-     * Constructor que copia el tablero existente y el renglón actual.
+     * Constructor con el estado completo.
      *
-     * @param tablero arreglo con posiciones de reinas
-     * @param renglon renglón actual
+     * @param columnas máscara de columnas ocupadas
+     * @param diag1    máscara de diagonales principales atacadas
+     * @param diag2    máscara de diagonales secundarias atacadas
+     * @param renglon  renglón actual
+     * @param peso     peso del estado
      */
-    public Data(int[] tablero, int renglon) {
-        this.tablero = (tablero != null) ? tablero : new int[TAM];
+    public Data(int columnas, int diag1, int diag2, int renglon, int peso) {
+        this.columnas = columnas;
+        this.diag1 = diag1;
+        this.diag2 = diag2;
         this.renglon = renglon;
+        this.peso = peso;
+    }
+
+    /**
+     * Devuelve las casillas libres del renglón actual.
+     *
+     * @return máscara de columnas donde se puede colocar una reina
+     */
+    public int libres() {
+        return TODAS & ~(columnas | diag1 | diag2);
+    }
+
+    /**
+     * Devuelve las columnas ocupadas.
+     *
+     * @return máscara de bits
+     */
+    public int getColumnas() {
+        return columnas;
+    }
+
+    /**
+     * Establece las columnas ocupadas.
+     *
+     * @param columnas nueva máscara
+     */
+    public void setColumnas(int columnas) {
+        this.columnas = columnas;
+    }
+
+    /**
+     * Devuelve las casillas atacadas por diagonales principales.
+     *
+     * @return máscara de bits
+     */
+    public int getDiag1() {
+        return diag1;
     }
 
     /**
-     * Devuelve el tablero de posiciones.
+     * Establece las casillas atacadas por diagonales principales.
      *
-     * @return arreglo de enteros con las posiciones de las reinas
+     * @param diag1 nueva máscara
      */
-    public int[] getTablero() {
-        return tablero;
+    public void setDiag1(int diag1) {
+        this.diag1 = diag1;
     }
 
     /**
-     * Asigna un nuevo tablero de posiciones.
+     * Devuelve las casillas atacadas por diagonales secundarias.
      *
-     * @param tablero nuevo arreglo; si es null se asigna uno vacío
+     * @return máscara de bits
      */
-    public void setTablero(int[] tablero) {
-        this.tablero = (tablero != null) ? tablero : new int[TAM];
+    public int getDiag2() {
+        return diag2;
+    }
+
+    /**
+     * Establece las casillas atacadas por diagonales secundarias.
+     *
+     * @param diag2 nueva máscara
+     */
+    public void setDiag2(int diag2) {
+        this.diag2 = diag2;
     }
 
     /**
@@ -84,18 +154,60 @@ public class Data implements DataLike {
     }
 
     /**
-     * Representación textual del tablero.
+     * Devuelve el peso del estado.
      *
-     * @return cadena con las posiciones de las reinas
+     * @return 1, o 2 si el subárbol cuenta también por su reflejo
+     */
+    public int getPeso() {
+        return peso;
+    }
+
+    /**
+     * Establece el peso del estado.
+     *
+     * @param peso nuevo peso
+     */
+    public void setPeso(int peso) {
+        this.peso = peso;
+    }
+
+    @Override
+    public int fields() {
+        return CAMPOS;
+    }
+
+    @Override
+    public void store(int[] fila, int off) {
+        fila[off] = columnas;
+        fila[off + 1] = diag1;
+        fila[off + 2] = diag2;
+        fila[off + 3] = renglon;
+        fila[off + 4] = peso;
+    }
+
+    @Override
+    public void load(int[] fila, int off) {
+        columnas = fila[off];
+        diag1 = fila[off + 1];
+        diag2 = fila[off + 2];
+        renglon = fila[off + 3];
+        peso = fila[off + 4];
+    }
+
+    /**
+     * Representación textual del estado.
+     *
+     * @return cadena con las máscaras y el renglón
      */
     @Override
     public String toString() {
-        return Arrays.toString(tablero);
+        return "Data{renglon=" + renglon + ", columnas=" + Integer.toBinaryString(columnas)
+                + ", peso=" + peso + "}";
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(Arrays.hashCode(tablero), renglon);
+        return Objects.hash(columnas, diag1, diag2, renglon, peso);
     }
 
     @Override
@@ -103,7 +215,7 @@ public class Data implements DataLike {
         if (this == obj) return true;
         if (!(obj instanceof Data)) return false;
         Data other = (Data) obj;
-        return renglon == other.renglon && Arrays.equals(tablero, other.tablero);
+        return columnas == other.columnas && diag1 == other.diag1 && diag2 == other.diag2
+                && renglon == other.renglon && peso == other.peso;
     }
 }
-
@@ -4,12 +4,18 @@ import java.util.Objects;
 /**
  * POJO que representa una entrada de trabajo (archivo) para DLML/Protocol.
  * Debe ser simple para permitir su serializacion a JSON.
+ *
+ * El nodo que guarda el archivo viaja con el elemento y es su afinidad: DLML lo
+ * usa para repartir la carga inicial y para elegir que elementos donar.
  */
-public class Data implements DataLike {
+public class Data implements AffinityLike {
 
     /** Ruta o nombre del archivo a procesar. */
     private String archivo = "";
 
+    /** Nodo (nombre de procesador MPI) que tiene el archivo en disco local; vacio si se desconoce. */
+    private String nodo = "";
+
     /** Constructor por defecto requerido por Jackson. */
     public Data() {
     }
@@ -23,6 +29,17 @@ public class Data implements DataLike {
         this.archivo = archivo;
     }
 
+    /**
+     * Constructor con afinidad.
+     *
+     * @param archivo ruta o nombre del archivo
+     * @param nodo    nodo que tiene el archivo; null si se desconoce
+     */
+    public Data(String archivo, String nodo) {
+        this.archivo = archivo;
+        setNodo(nodo);
+    }
+
     /**
      * Obtiene el nombre/ruta del archivo.
      *
@@ -41,9 +58,32 @@ public class Data implements DataLike {
         this.archivo = (archivo != null) ? archivo : "";
     }
 
+    /**
+     * Obtiene el nodo que tiene el archivo.
+     *
+     * @return nombre del nodo, o cadena vacia si se desconoce
+     */
+    public String getNodo() {
+        return nodo;
+    }
+
+    /**
+     * Establece el nodo que tiene el archivo.
+     *
+     * @param nodo nombre del nodo; si es null se asigna cadena vacia
+     */
+    public void setNodo(String nodo) {
+        this.nodo = (nodo != null) ? nodo : "";
+    }
+
+    @Override
+    public String affinity() {
+        return nodo;
+    }
+
     @Override
     public String toString() {
-        return "Data{archivo='" + archivo + "'}";
+        return "Data{archivo='" + archivo + "', nodo='" + nodo + "'}";
     }
 
     @Override
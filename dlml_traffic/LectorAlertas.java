@@ -0,0 +1,86 @@
+// LectorAlertas.java
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Extractor de IDs de alertas Waze basado en el parser de streaming de Jackson.
+ *
+ * A diferencia de construir el arbol completo con org.json, el archivo se mapea en
+ * memoria y se recorre token a token: solo se materializa el texto de {@code alerts[*].id};
+ * el resto de subarboles (comments, location, jams, users, ...) se salta sin crear objetos.
+ */
+final class LectorAlertas {
+
+    /** Fabrica de parsers compartida; es thread-safe y recicla sus buffers internos. */
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private LectorAlertas() {
+    }
+
+    /**
+     * Recorre el archivo y entrega cada {@code alerts[*].id} al consumidor.
+     * Los elementos de {@code alerts} que no son objetos o no tienen un id de tipo
+     * cadena se ignoran.
+     *
+     * @param archivo ruta del archivo JSON
+     * @param destino consumidor que recibe cada id encontrado
+     * @return numero de ids entregados
+     * @throws IOException si el archivo no se puede leer o el JSON esta mal formado
+     */
+    static int extraer(String archivo, Consumer<String> destino) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel canal = FileChannel.open(Paths.get(archivo), StandardOpenOption.READ)) {
+            buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+
+        int n = 0;
+        try (JsonParser p = FACTORY.createParser(new ByteBufferBackedInputStream(buffer))) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return 0;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = p.getCurrentName();
+                if (p.nextToken() == JsonToken.START_ARRAY && "alerts".equals(campo)) {
+                    n += extraerAlertas(p, destino);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Consume el arreglo {@code alerts} (el parser esta posicionado en su START_ARRAY)
+     * y deja el parser en el END_ARRAY correspondiente.
+     */
+    private static int extraerAlertas(JsonParser p, Consumer<String> destino) throws IOException {
+        int n = 0;
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+            if (t != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = p.getCurrentName();
+                if (p.nextToken() == JsonToken.VALUE_STRING && "id".equals(campo)) {
+                    destino.accept(p.getText());
+                    n++;
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return n;
+    }
+}
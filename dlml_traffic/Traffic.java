@@ -1,28 +1,66 @@
 // Traffic.java (versión sin Arbol.java)
-// Requiere: Data.java (implements DataLike) y DLML con setDataClass(), Get(Data.class), Reduce_Add(int), Gather(Object).
-// Lee waze/<i>.json con org.json; fusiona IDs de alertas en un TreeMap y reduce en root.
+// Requiere: Data.java (implements AffinityLike) y DLML con setDataClass(), InsertAffine(), Get(Data.class),
+// Emit(), Reduce_Add(int) y ReduceByKey().
+// Lee waze/<i>.json en streaming (LectorAlertas); los IDs de alertas se envían al root con DLML.Emit,
+// que los deduplica conforme llegan (o, con -Dtraffic.dedup=partition, se deduplican con ReduceByKey).
+//
+// Afinidad: -Dtraffic.placement (por omisión waze/placement.txt, si existe) indica en qué nodo está
+// cada archivo, una línea "<archivo> <nodo>" por archivo; el nodo es el nombre de procesador MPI
+// (normalmente el hostname). Todos los procesos deben leer el mismo archivo de ubicaciones.
 
 import mpi.MPI;
 import mpi.MPIException;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.FileInputStream;
-import java.util.ArrayList;
-import java.util.Map.Entry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.TreeMap;
 class Traffic {
 
     /** Total global de archivos procesados (reduce de enteros). */
     static int totalProcesados = 0;
 
-    /** Reportes únicos locales (id -> ""). */
+    /** Deduplicación: "stream" (Emit al root, por omisión) o "partition" (ReduceByKey). */
+    static final boolean PARTICION = "partition".equalsIgnoreCase(System.getProperty("traffic.dedup", "stream"));
+
+    /** Reportes únicos locales (id -> ""); solo con -Dtraffic.dedup=partition. */
     static final TreeMap<String,String> reportesLocales = new TreeMap<>();
 
-    /** Procesa los archivos asignados y llena reportesLocales con IDs únicos. */
+    /** IDs únicos en el root, llenado por el combinador del flujo de Emit. */
+    static final HashSet<String> unicosRoot = new HashSet<>();
+
+    /** Sketch local de IDs para el conteo aproximado (tamaño fijo, ~4 KB). */
+    static final HyperLogLog idsAprox = new HyperLogLog();
+
+    /**
+     * Lee el archivo de ubicaciones ("<archivo> <nodo>" por línea; se ignoran las
+     * líneas vacías y las que empiezan con #).
+     *
+     * @return archivo -> nodo; vacío si no hay archivo de ubicaciones
+     */
+    static HashMap<String,String> ubicaciones() throws IOException {
+        HashMap<String,String> nodos = new HashMap<>();
+        String ruta = System.getProperty("traffic.placement");
+        Path p = Paths.get(ruta != null ? ruta : "waze/placement.txt");
+        if (ruta == null && !Files.exists(p)) {
+            return nodos;
+        }
+        for (String linea : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+            linea = linea.trim();
+            if (linea.isEmpty() || linea.startsWith("#")) continue;
+            String[] campos = linea.split("\\s+");
+            if (campos.length >= 2) {
+                nodos.put(campos[0], campos[1]);
+            }
+        }
+        return nodos;
+    }
+
+    /** Procesa los archivos asignados y envía (o acumula en reportesLocales) sus IDs. */
     static int contar() throws MPIException {
         int procesados = 0;
         Data elem;
@@ -30,19 +68,16 @@ class Traffic {
         System.out.println(DLML.id + ": Iniciando conteo...");
 
         while ((elem = DLML.Get(Data.class)) != null) {
-            try (InputStream is = new FileInputStream(elem.getArchivo())) {
-                if (is == null) {
-                    throw new NullPointerException("No se puede abrir el archivo " + elem.getArchivo());
-                }
-                JSONTokener tokener = new JSONTokener(is);
-                JSONObject object = new JSONObject(tokener);
-                JSONArray alerts = object.getJSONArray("alerts");
-
-                for (int i = 0; i < alerts.length(); i++) {
-                    String id = alerts.getJSONObject(i).getString("id");
-                    // Solo nos interesa la unicidad del id; guardamos "" como valor
-                    reportesLocales.putIfAbsent(id, "");
-                }
+            try {
+                // Solo nos interesa la unicidad del id
+                LectorAlertas.extraer(elem.getArchivo(), id -> {
+                    if (PARTICION) {
+                        reportesLocales.putIfAbsent(id, "");
+                    } else {
+                        DLML.Emit(id);
+                    }
+                    idsAprox.offer(id);
+                });
                 procesados++;
             } catch (IOException e) {
                 System.err.println("Error de lectura en " + elem.getArchivo() + ": " + e.getMessage());
@@ -56,61 +91,65 @@ class Traffic {
         DLML.Init(args);
 
         int id = DLML.id;
-        int total = DLML.total;
         double t0 = MPI.wtime();
 
         System.out.println(id + ": Iniciando carga de archivos...");
 
-        // Distribución round-robin de archivos
+        // Reparto inicial por afinidad: cada archivo va a un proceso del nodo que lo
+        // tiene; los archivos sin ubicación se reparten en ronda entre todos
         final String prefijo = "waze/";
         final String extension = "json";
-        final int N = 100; // ajusta si necesitas otro rango
-        for (int i = id+1; i <= N; i += total) {
+        final int N = Integer.getInteger("traffic.files", 100); // -Dtraffic.files para otro rango
+        HashMap<String,String> nodos = ubicaciones();
+        for (int i = 1; i <= N; i++) {
             String archivo = prefijo + i + "." + extension;
-            DLML.Insert(new Data(archivo));
+            DLML.InsertAffine(new Data(archivo, nodos.get(archivo)));
+        }
+
+        // Los IDs viajan al root durante el procesamiento; el root los deduplica al llegar
+        if (!PARTICION) {
+            DLML.OpenStream(String.class, unicosRoot::add);
         }
 
         // Procesamiento local
         int locales = contar();
         System.out.println(id + ": Archivos procesados localmente: " + locales);
 
+        if (!PARTICION) {
+            DLML.CloseStream();
+        }
+
         // Reduce global del conteo (entero)
         totalProcesados = DLML.Reduce_Add(locales);
 
-        @SuppressWarnings("unchecked")
-        TreeMap<String,String> all = DLML.Reduce(reportesLocales, (Class<TreeMap<String,String>>) (Class<?>) TreeMap.class,
-            (a,b)-> {
-                b.forEach( (k,v)->a.putIfAbsent(k,v));
-                return a;
+        // Conteo aproximado de IDs únicos: intercambio de tamaño fijo sin importar el volumen
+        HyperLogLog aprox = DLML.Reduce_Merge(idsAprox);
+        if (id == 0) {
+            System.out.println("Total aproximado de IDs únicos (HLL): " + aprox.estimate());
+        }
 
+        // Con -Dtraffic.dedup=partition: deduplicación exacta distribuida, cada proceso
+        // se queda con los IDs de su partición hash y el root solo recibe los tamaños.
+        int unicos = unicosRoot.size();
+        if (PARTICION) {
+            HashMap<String,String> particion = DLML.ReduceByKey(reportesLocales, String.class, String.class, (a,b) -> a);
+            int[] tamanos = DLML.Gather_Sizes(particion);
+            if (id == 0) {
+                for (int t : tamanos) unicos += t;
             }
-        );
-
+        }
 
         if (id == 0) {
-            System.out.println("Total de entradas: " + all.size());
+            System.out.println("Total de IDs únicos: " + unicos);
             System.out.println("Total de archivos procesados (global): " + totalProcesados);
         }
 
-        // "Reduce" de objetos: Gather de TreeMap<String,String> y fusión en root
-        // (Tu versión previa usaba Arbol y luego lo reunía y consolidaba. :contentReference[oaicite:2]{index=2}  También se define Arbol como envoltorio de TreeMap. :contentReference[oaicite:3]{index=3})
-        @SuppressWarnings("unchecked")
-        ArrayList<TreeMap<String,String>> mapas = DLML.<TreeMap<String,String>>Gather(reportesLocales);
-
-        // En root, fusionar los mapas (reduce por unión de claves)
-        DLML.OnlyOne(() -> {
-            TreeMap<String,String> global = new TreeMap<>();
-            for (TreeMap<String,String> m : mapas) {
-                for (Entry<String,String> e : m.entrySet()) {
-                    global.putIfAbsent(e.getKey(), e.getValue());
-                }
-            }
-            System.out.println("Total de IDs únicos: " + global.size());
-        });
-
         double t1 = MPI.wtime();
         System.out.printf("Tiempo total: %.3f segundos%n", (t1 - t0));
 
+        // Linea CSV para dlml_bench/run-bench.sh
+        DLML.Report_Csv("traffic", "files=" + N + " dedup=" + (PARTICION ? "partition" : "stream"), t1 - t0);
+
         DLML.Finalize();
     }
 }